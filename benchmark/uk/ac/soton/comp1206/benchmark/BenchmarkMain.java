@@ -0,0 +1,35 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler, so every result shows the bytes allocated per operation alongside the
+ * operations per second. Takes the usual JMH command line options, such as a benchmark name pattern to run only some
+ * of them or -p size=5 to fix a parameter.
+ */
+public class BenchmarkMain {
+
+    /**
+     * Run the benchmarks
+     * @param args JMH command line options
+     * @throws RunnerException if a benchmark fails
+     * @throws CommandLineOptionException if the options are not valid
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        builder.addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty()) builder.include(BenchmarkMain.class.getPackageName() + "\\..*");
+
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
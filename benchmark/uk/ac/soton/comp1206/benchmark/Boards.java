@@ -0,0 +1,56 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.RandomPieceGenerator;
+
+/**
+ * Builds the boards the benchmarks run on. Boards are filled from a fixed seed, so every run measures the same
+ * positions.
+ */
+final class Boards {
+
+    /**
+     * The seed the boards are filled from
+     */
+    static final long SEED = 1206;
+
+    /**
+     * This class only holds static helpers
+     */
+    private Boards() {
+    }
+
+    /**
+     * Create a grid with roughly the given fraction of its blocks filled
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param density the fraction of blocks to fill, between 0 and 1
+     * @return the grid
+     */
+    static Grid createGrid(int cols, int rows, double density) {
+        Grid grid = new Grid(cols, rows);
+        fill(grid, density, new RandomPieceGenerator(SEED));
+        return grid;
+    }
+
+    /**
+     * Fill roughly the given fraction of the blocks of a grid with random piece values
+     * @param grid the grid
+     * @param density the fraction of blocks to fill, between 0 and 1
+     * @param random the random numbers to fill it with
+     */
+    static void fill(Grid grid, double density, RandomPieceGenerator random) {
+        int threshold = (int) (density * 1000);
+
+        grid.update(() -> {
+            for (int y = 0; y < grid.getRows(); y++) {
+                for (int x = 0; x < grid.getCols(); x++) {
+                    if (random.nextInt(1000) < threshold) {
+                        grid.updateGridValue(x, y, random.nextInt(GamePiece.PIECES) + 1);
+                    }
+                }
+            }
+        });
+    }
+}
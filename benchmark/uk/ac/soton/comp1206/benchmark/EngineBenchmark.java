@@ -0,0 +1,92 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.GameSnapshot;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.RandomPieceGenerator;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks playing a piece through the engine, which runs afterPiecePlayed: clearing the lines the piece completes
+ * and updating the score, level and multiplier. The board is set up so the piece always completes the rows it covers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+
+    /**
+     * The width and height of the board
+     */
+    @Param({"5", "10", "20", "64"})
+    public int size;
+
+    /**
+     * The fraction of blocks filled, other than the rows the piece completes
+     */
+    @Param({"0.0", "0.3", "0.6"})
+    public double density;
+
+    /**
+     * The engine
+     */
+    private GameEngine engine;
+
+    /**
+     * A snapshot of the engine just before the piece is played
+     */
+    private ByteBuffer snapshot;
+
+    /**
+     * Build the board, leaving a gap in the top rows the shape of the current piece
+     */
+    @Setup
+    public void setup() {
+        engine = new GameEngine(size, size, new RandomPieceGenerator(Boards.SEED));
+        engine.start();
+
+        Grid grid = engine.getGrid();
+        Boards.fill(grid, density, new RandomPieceGenerator(Boards.SEED + 1));
+
+        // Fill the rows the piece covers, except for the piece itself, so playing it at the top left clears them
+        int shape = engine.getCurrentPiece().getShape();
+        for (int y = 0; y < GamePiece.SIZE; y++) {
+            int rowMask = (shape >>> (y * GamePiece.SIZE)) & 0b111;
+            if (rowMask == 0) continue;
+
+            for (int x = 0; x < size; x++) {
+                boolean inPiece = x < GamePiece.SIZE && (rowMask & (1 << x)) != 0;
+                grid.updateGridValue(x, y, inPiece ? 0 : 1);
+            }
+        }
+
+        snapshot = GameSnapshot.capture(engine);
+    }
+
+    /**
+     * Restore the board, as a baseline for playPiece
+     * @return the engine
+     */
+    @Benchmark
+    public GameEngine restore() {
+        GameSnapshot.restore(engine, snapshot.rewind());
+        return engine;
+    }
+
+    /**
+     * Restore the board and play the piece, clearing its rows. Subtract restore to get the cost of the move.
+     * @return whether the piece was played
+     */
+    @Benchmark
+    public boolean playPiece() {
+        GameSnapshot.restore(engine, snapshot.rewind());
+        return engine.blockClicked(1, 1);
+    }
+}
@@ -0,0 +1,175 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.RandomPieceGenerator;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Grid operations on the move path: checking whether a piece fits, playing a piece and clearing the
+ * grid, across board sizes and fill densities.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridBenchmark {
+
+    /**
+     * The number of positions cycled through, which must be a power of two
+     */
+    private static final int POSITIONS = 1024;
+
+    /**
+     * The width and height of the board
+     */
+    @Param({"5", "10", "20", "64"})
+    public int size;
+
+    /**
+     * The fraction of blocks filled
+     */
+    @Param({"0.0", "0.3", "0.6"})
+    public double density;
+
+    /**
+     * The grid
+     */
+    private Grid grid;
+
+    /**
+     * The grid written out by writeState, used to refill it
+     */
+    private ByteBuffer filledState;
+
+    /**
+     * The pieces checked by canPlayPiece, each with a random rotation
+     */
+    private final GamePiece[] checkPieces = new GamePiece[POSITIONS];
+
+    /**
+     * The top left corners checked by canPlayPiece, which may or may not fit
+     */
+    private final int[] checkX = new int[POSITIONS];
+
+    /**
+     * The top left corners checked by canPlayPiece, which may or may not fit
+     */
+    private final int[] checkY = new int[POSITIONS];
+
+    /**
+     * The pieces played by playPiece, each of which fits at its position
+     */
+    private final GamePiece[] playPieces = new GamePiece[POSITIONS];
+
+    /**
+     * The centres played at by playPiece
+     */
+    private final int[] playX = new int[POSITIONS];
+
+    /**
+     * The centres played at by playPiece
+     */
+    private final int[] playY = new int[POSITIONS];
+
+    /**
+     * The next position to use
+     */
+    private int next;
+
+    /**
+     * Build the grid and choose the positions
+     */
+    @Setup
+    public void setup() {
+        grid = Boards.createGrid(size, size, density);
+        filledState = ByteBuffer.allocate(size * size * 2 + 64);
+        grid.writeState(filledState);
+        filledState.flip();
+
+        RandomPieceGenerator random = new RandomPieceGenerator(Boards.SEED);
+        for (int i = 0; i < POSITIONS; i++) {
+            checkPieces[i] = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(4));
+            checkX[i] = random.nextInt(size + 2) - 2;
+            checkY[i] = random.nextInt(size + 2) - 2;
+        }
+
+        // Collect every piece and centre that fits, then spread the played positions across them
+        List<int[]> legal = new ArrayList<>();
+        for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (grid.canPlayPiece(GamePiece.createPiece(piece), x - 1, y - 1)) {
+                        legal.add(new int[]{piece, x, y});
+                    }
+                }
+            }
+        }
+        if (legal.isEmpty()) throw new IllegalStateException("No piece fits on the board");
+
+        for (int i = 0; i < POSITIONS; i++) {
+            int[] position = legal.get(random.nextInt(legal.size()));
+            playPieces[i] = GamePiece.createPiece(position[0]);
+            playX[i] = position[1];
+            playY[i] = position[2];
+        }
+    }
+
+    /**
+     * Check whether a piece fits at a position
+     * @return whether it fits
+     */
+    @Benchmark
+    public boolean canPlayPiece() {
+        int i = next++ & (POSITIONS - 1);
+        return grid.canPlayPiece(checkPieces[i], checkX[i], checkY[i]);
+    }
+
+    /**
+     * Play a piece, then empty its blocks again so the grid is the same for the next call. The time includes emptying
+     * the blocks, which costs about the same as playing them.
+     * @return whether the piece was played
+     */
+    @Benchmark
+    public boolean playPiece() {
+        int i = next++ & (POSITIONS - 1);
+        GamePiece piece = playPieces[i];
+        boolean played = grid.playPiece(piece, playX[i], playY[i]);
+
+        int shape = piece.getShape();
+        for (int block = 0; block < GamePiece.SIZE * GamePiece.SIZE; block++) {
+            if ((shape & (1 << block)) != 0) {
+                grid.updateGridValue(playX[i] - 1 + block % GamePiece.SIZE, playY[i] - 1 + block / GamePiece.SIZE, 0);
+            }
+        }
+        return played;
+    }
+
+    /**
+     * Refill the grid, as a baseline for clearGrid
+     * @return the grid
+     */
+    @Benchmark
+    public Grid refillGrid() {
+        grid.readState(filledState.rewind());
+        return grid;
+    }
+
+    /**
+     * Refill the grid and clear it. Subtract refillGrid to get the cost of clearing.
+     * @return the grid
+     */
+    @Benchmark
+    public Grid clearGrid() {
+        grid.readState(filledState.rewind());
+        grid.clearGrid();
+        return grid;
+    }
+}
@@ -0,0 +1,76 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.component.Leaderboard;
+import uk.ac.soton.comp1206.scene.MultiplayerScene;
+import uk.ac.soton.comp1206.scene.ScoresScene;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing the score lists sent by the server, for the high score table and the multiplayer leaderboard
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    /**
+     * The number of scores in each message
+     */
+    @Param({"10", "100", "1000"})
+    public int entries;
+
+    /**
+     * A HISCORES message, as parsed by the scores scene
+     */
+    private String highScores;
+
+    /**
+     * A SCORES message, as parsed by the multiplayer scene
+     */
+    private String multiplayerScores;
+
+    /**
+     * Build the messages
+     */
+    @Setup
+    public void setup() {
+        StringBuilder high = new StringBuilder("HISCORES ");
+        StringBuilder multiplayer = new StringBuilder("SCORES ");
+
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) {
+                high.append('\n');
+                multiplayer.append('\n');
+            }
+            high.append("player").append(i).append(':').append(i * 137 % 10000);
+            multiplayer.append("player").append(i).append(':').append(i * 137 % 10000).append(':').append(i % 4 - 1);
+        }
+
+        highScores = high.toString();
+        multiplayerScores = multiplayer.toString();
+    }
+
+    /**
+     * Parse a HISCORES message
+     * @return the scores
+     */
+    @Benchmark
+    public List<ScoresScene.Score> scoresScene() {
+        return ScoresScene.parseStringScores(highScores);
+    }
+
+    /**
+     * Parse a SCORES message
+     * @return the leaderboard entries
+     */
+    @Benchmark
+    public List<Leaderboard.LeaderboardEntry> multiplayerScene() {
+        return MultiplayerScene.parseStringScores(multiplayerScores);
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.soton.comp1206.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks creating and rotating game pieces
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PieceBenchmark {
+
+    /**
+     * The piece that is rotated
+     */
+    private GamePiece piece;
+
+    /**
+     * The next piece type to create
+     */
+    private int next;
+
+    /**
+     * Create the piece that is rotated
+     */
+    @Setup
+    public void setup() {
+        piece = GamePiece.createPiece(0);
+    }
+
+    /**
+     * Rotate a piece and read its new shape
+     * @return the shape
+     */
+    @Benchmark
+    public int rotate() {
+        piece.rotate();
+        return piece.getShape();
+    }
+
+    /**
+     * Create a piece of each type in turn
+     * @return the piece
+     */
+    @Benchmark
+    public GamePiece createPiece() {
+        int type = next++;
+        if (next == GamePiece.PIECES) next = 0;
+        return GamePiece.createPiece(type);
+    }
+}
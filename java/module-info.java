@@ -14,4 +14,6 @@ module uk.ac.soton.comp1206 {
     exports uk.ac.soton.comp1206.event;
     exports uk.ac.soton.comp1206.component;
     exports uk.ac.soton.comp1206.game;
+    exports uk.ac.soton.comp1206.simulation;
+    exports uk.ac.soton.comp1206.solver;
 }
\ No newline at end of file
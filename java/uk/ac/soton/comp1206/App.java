@@ -6,8 +6,11 @@ import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import uk.ac.soton.comp1206.game.Grid;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
+import java.util.Map;
+
 /**
  * JavaFX Application class
  */
@@ -41,7 +44,7 @@ public class App extends Application {
      */
     public static void main(String[] args) {
         logger.info("Starting client");
-        launch();
+        launch(args);
     }
 
     /**
@@ -66,12 +69,46 @@ public class App extends Application {
         // Change the width and height in this class to change the base rendering resolution for all game parts
         int width = 800;
         int height = 600;
-        new GameWindow(stage, width, height);
+
+        // The board size can be given on the commandline with --cols=N and --rows=N
+        var named = getParameters().getNamed();
+        int boardCols = parseBoardSize(named, "cols", Grid.MAX_COLS, GameWindow.DEFAULT_BOARD_COLS);
+        int boardRows = parseBoardSize(named, "rows", Grid.MAX_ROWS, GameWindow.DEFAULT_BOARD_ROWS);
+        new GameWindow(stage, width, height, boardCols, boardRows);
 
         // Display the GameWindow
         stage.show();
     }
 
+    /**
+     * Read one side of the board size from the commandline, falling back to the default if it is missing or invalid
+     * @param named the named commandline arguments
+     * @param name the name of the argument
+     * @param max the largest size allowed
+     * @param defaultSize the size to use if the argument is missing or invalid
+     * @return the board size
+     */
+    private static int parseBoardSize(Map<String, String> named, String name, int max, int defaultSize) {
+        String arg = named.get(name);
+        if (arg == null) return defaultSize;
+
+        int size;
+        try {
+            size = Integer.parseInt(arg.trim());
+        } catch (NumberFormatException e) {
+            logger.error("Invalid --{}={}, using the default of {}", name, arg, defaultSize);
+            return defaultSize;
+        }
+
+        // Let the game start on the default board rather than failing to open the window
+        if (size < 1 || size > max) {
+            logger.error("--{}={} must be between 1 and {}, using the default of {}", name, arg, max, defaultSize);
+            return defaultSize;
+        }
+
+        return size;
+    }
+
     /**
      * Shutdown the game
      */
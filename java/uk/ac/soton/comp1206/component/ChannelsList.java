@@ -8,15 +8,12 @@ import javafx.scene.control.Button;
 import javafx.scene.layout.VBox;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.TimerWheel;
 import uk.ac.soton.comp1206.network.Communicator;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A javafx UI component that acts as a list of buttons for containing the available channels in the lobby
@@ -38,14 +35,14 @@ public class ChannelsList extends VBox {
     private final SimpleListProperty<String> channels;
 
     /**
-     * The scheduler which is used as a timer for calling a function that updates the list of channels
+     * The time between updates of the list of channels in milliseconds
      */
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private static final long UPDATE_CHANNELS_DELAY = 3000;
 
     /**
-     * The update channels future which is used for resetting and shutting down the timer properly
+     * The timeout on the shared timer wheel which is used for calling a function that updates the list of channels
      */
-    private Future<?> updateChannelsFuture;
+    private final TimerWheel.Timeout updateChannelsTimeout;
 
     /**
      * The constructor for this component
@@ -54,6 +51,7 @@ public class ChannelsList extends VBox {
     public ChannelsList(Communicator communicator) {
         this.communicator = communicator;
         this.communicator.addListener(this::handleServerMessage);
+        this.updateChannelsTimeout = TimerWheel.getInstance().newTimeout(this::updateChannels);
         this.updateChannels();
 
         this.channels = new SimpleListProperty<>(FXCollections.observableArrayList());
@@ -66,18 +64,7 @@ public class ChannelsList extends VBox {
      * Starts the update channels timer
      */
     private void startUpdateChannelsTimer() {
-        if (this.updateChannelsFuture != null && !this.updateChannelsFuture.isDone()) {
-            this.updateChannelsFuture.cancel(true);
-        }
-
-        // Start the timer
-        Runnable updateChannelsTask = () -> {
-            if (Thread.currentThread().isInterrupted()) return;
-            this.updateChannels();
-        };
-
-        long timerDelay = 3000;
-        this.updateChannelsFuture = scheduler.scheduleAtFixedRate(updateChannelsTask, timerDelay, timerDelay, TimeUnit.MILLISECONDS);
+        this.updateChannelsTimeout.scheduleRepeating(UPDATE_CHANNELS_DELAY, UPDATE_CHANNELS_DELAY);
     }
 
     /**
@@ -92,10 +79,6 @@ public class ChannelsList extends VBox {
      * Resets the update channels timer
      */
     private void resetUpdateChannelsTimer() {
-        if (updateChannelsFuture != null) {
-            updateChannelsFuture.cancel(true);
-        }
-
         this.startUpdateChannelsTimer();
     }
 
@@ -103,18 +86,7 @@ public class ChannelsList extends VBox {
      * Shuts down the update channels timer properly
      */
     public void shutdownUpdateChannelsTimer() {
-        if (updateChannelsFuture != null) {
-            updateChannelsFuture.cancel(true);
-        }
-
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(800, TimeUnit.MILLISECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-        }
+        this.updateChannelsTimeout.cancel();
     }
 
     /**
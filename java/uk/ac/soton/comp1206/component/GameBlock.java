@@ -1,28 +1,25 @@
 package uk.ac.soton.comp1206.component;
 
-import javafx.animation.*;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.beans.value.ObservableValue;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.*;
-import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.PackedCoordinate;
 
 /**
  * The Visual User Interface component representing a single block in the grid.
  * <p>
- * Extends Canvas and is responsible for drawing itself.
+ * Holds the value, hover and fade state of the block and is responsible for drawing it, by copying the tile for its
+ * value and state from a TileAtlas. The block is not a Node itself. When its GameBoard uses the canvas renderer it
+ * draws into its part of the board's canvas, so a board of any size adds a single Node to the scene. With the blocks
+ * renderer it makes a Canvas of its own, which the board adds to the scene.
  * <p>
  * Displays an empty square (when the value is 0) or a coloured square depending on value.
  * <p>
  * The GameBlock value should be bound to a corresponding block in the Grid model.
  */
-public class GameBlock extends Canvas {
+public class GameBlock {
 
     /**
      * The logger for this class
@@ -74,7 +71,7 @@ public class GameBlock extends Canvas {
     /**
      * The value of this block (0 = empty, otherwise specifies the colour to render as)
      */
-    private final IntegerProperty value = new SimpleIntegerProperty(0);
+    private int value;
 
     /**
      * Keeps track of whether the block is in the fade out animation, so other paint functions that are called dont run
@@ -93,20 +90,45 @@ public class GameBlock extends Canvas {
     public boolean displayIndicator = false;
 
     /**
-     * The animated colour used for the fade out
+     * How far through the fade out animation the block is, from 0 to 1
      */
-    private final ObjectProperty<Color> fadeAnimationColour = new SimpleObjectProperty<>(Color.WHITE);
+    private double fadeProgress;
 
     /**
-     * The animated opacity used for the fade out
+     * The pre-drawn tiles the block is painted from
      */
-    private final ObjectProperty<Double> fadeAnimationOpacity = new SimpleObjectProperty<>(1.0);
+    private final TileAtlas atlas;
+
+    /**
+     * Whether the block is currently showing the hover effect
+     */
+    private boolean hovered;
 
     /**
      * The game board that the block belongs to
      */
     private final GameBoard parentGameBoard;
 
+    /**
+     * The canvas of this block, or null if it draws into the board's canvas
+     */
+    private final Canvas canvas;
+
+    /**
+     * The graphics context the block draws with, either its own or the board's
+     */
+    private final GraphicsContext graphics;
+
+    /**
+     * The left edge of the block in the canvas it draws into
+     */
+    private final double originX;
+
+    /**
+     * The top edge of the block in the canvas it draws into
+     */
+    private final double originY;
+
     /**
      * An enum used to determine whether a mouse hover event is for the mouse exiting or entering the block
      */
@@ -131,29 +153,47 @@ public class GameBlock extends Canvas {
      * @param height the height of the canvas to render
      */
     public GameBlock(GameBoard gameBoard, int x, int y, double width, double height) {
+        this(gameBoard, x, y, width, height, null);
+    }
+
+    /**
+     * Create a new single Game Block that draws into the board's canvas, rather than having a canvas of its own. The
+     * board is responsible for passing on mouse events to the block.
+     * @param gameBoard the board this block belongs to
+     * @param x the column the block exists in
+     * @param y the row the block exists in
+     * @param width the width of the block
+     * @param height the height of the block
+     * @param boardGraphics the graphics context of the board's canvas, or null for the block to have its own canvas
+     */
+    public GameBlock(GameBoard gameBoard, int x, int y, double width, double height, GraphicsContext boardGraphics) {
         this.width = width;
         this.height = height;
         this.x = x;
         this.y = y;
         this.parentGameBoard = gameBoard;
+        this.isPartOfGameBoard = !(gameBoard instanceof PieceBoard);
 
-        // A canvas needs a fixed width and height
-        setWidth(width);
-        setHeight(height);
+        // Draw into the board's canvas if there is one, otherwise be a canvas of our own
+        if (boardGraphics != null) {
+            this.canvas = null;
+            this.graphics = boardGraphics;
+            this.originX = x * width;
+            this.originY = y * height;
+        } else {
+            this.canvas = new Canvas(width, height);
+            this.graphics = canvas.getGraphicsContext2D();
+            this.originX = 0;
+            this.originY = 0;
+
+            // Set hover effect
+            canvas.setOnMouseEntered(e -> this.onHover(EnterOrExit.ENTER));
+            canvas.setOnMouseExited(e -> this.onHover(EnterOrExit.EXIT));
+        }
 
         // Do an initial paint
+        this.atlas = TileAtlas.get(width, height);
         paint();
-
-        // When the value property is updated, call the internal updateValue method
-        value.addListener(this::updateValue);
-        fadeAnimationColour.addListener((observable, oldValue, newValue) -> this.paintColorBasic(newValue));
-        fadeAnimationOpacity.addListener((observable, oldValue, newValue) -> this.setOpacity(newValue));
-
-        // Set hover effect
-        this.setOnMouseEntered(e -> this.onHover(EnterOrExit.ENTER));
-        this.setOnMouseExited(e -> this.onHover(EnterOrExit.EXIT));
-
-        this.isPartOfGameBoard = !(gameBoard instanceof PieceBoard);
     }
 
     /**
@@ -161,176 +201,90 @@ public class GameBlock extends Canvas {
      * @param enterOrExit whether the mouse entered the block or exited
      */
     public void onHover(EnterOrExit enterOrExit) {
-        if (this.inFadeOutAnimation) return;
         if (!this.isPartOfGameBoard) return;
 
+        // The board keeps track of which block is hovered, so only this block and the one before it are repainted
         switch (enterOrExit) {
             case ENTER -> {
-                // Make sure to get rid of the hover effect on the previously hovered block
-                if (this.parentGameBoard.gameBlockCurrentlySelected != null) this.parentGameBoard.gameBlockCurrentlySelected.onHover(EnterOrExit.EXIT);
-
-                this.paintHover();
-                this.parentGameBoard.gameBlockCurrentlySelected = this;
+                if (!this.inFadeOutAnimation) this.parentGameBoard.hoverBlock(this);
             }
-            case EXIT -> this.paint();
+            case EXIT -> this.parentGameBoard.unhoverBlock(this);
         }
     }
 
     /**
-     * Plays the fade out animation for the block
+     * Set whether the block is showing the hover effect, painting it if that changed. Called by the board as the
+     * hovered block moves.
+     * @param hovered whether the block is hovered
      */
-    public void fadeOut() {
-        if (inFadeOutAnimation) return;
-
-        this.inFadeOutAnimation = true;
-        this.paintEmpty();
-        this.paintHover();
-
-        Timeline timeline = new Timeline();
-        double toGreenDuration = 0.2;
-        double toWhiteDuration = 0.6;
-
-        // Create key frames
-        KeyFrame toGreen = new KeyFrame(Duration.seconds(toGreenDuration),
-                new KeyValue(this.fadeAnimationColour, Color.GREEN),
-                new KeyValue(this.fadeAnimationOpacity, 0.7));
-        KeyFrame toWhite = new KeyFrame(Duration.seconds(toWhiteDuration),
-                new KeyValue(this.fadeAnimationColour, Color.WHITE, Interpolator.EASE_OUT),
-                new KeyValue(this.fadeAnimationOpacity, 0.0, Interpolator.EASE_IN));
-
-        timeline.getKeyFrames().addAll(toGreen, toWhite);
-
-        timeline.setOnFinished(e -> {
-            this.inFadeOutAnimation = false;
-            paint();
-        });
-
-        timeline.play();
+    void setHovered(boolean hovered) {
+        if (this.hovered == hovered) return;
+        this.hovered = hovered;
+        this.paint();
     }
 
     /**
-     * When the value of this block is updated,
-     * @param observable what was updated
-     * @param oldValue the old value
-     * @param newValue the new value
+     * Paints the hover effect again if the block is being hovered over, for when the piece being placed changes
      */
-    private void updateValue(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-        if (this.inFadeOutAnimation) return;
-        paint();
+    public void repaintHover() {
+        if (this.hovered && !this.inFadeOutAnimation) this.paint();
     }
 
     /**
-     * Handle painting of the block canvas
+     * Plays the fade out animation for the block. The board runs the animation, along with every other fade on it.
      */
-    public void paint() {
-        this.setOpacity(1);
-
-        // If the block is empty, paint as empty
-        if(value.get() == 0) {
-            paintEmpty();
+    public void fadeOut() {
+        if (inFadeOutAnimation) return;
 
-        } else {
-            // If the block is not empty, paint with the colour represented by the value
-            paintColor(COLOURS[value.get()]);
-
-            GraphicsContext gc = getGraphicsContext2D();
-            if (displayIndicator) {
-                double radius = Math.min(width, height) / 4;
-                gc.setFill(Color.WHITE.deriveColor(0, 1, 1, 0.5));
-                gc.fillOval((width / 2) - radius, (height / 2) - radius, radius * 2, radius * 2);
-            }
-        }
+        this.inFadeOutAnimation = true;
+        this.fadeProgress = 0;
+        this.parentGameBoard.startFade(this);
+        this.paint();
     }
 
     /**
-     * Paint this canvas empty
+     * Move the fade out animation on. Called by the board on each frame of the animation.
+     * @param progress how far through the animation, from 0 to 1
      */
-    private void paintEmpty() {
-        var gc = getGraphicsContext2D();
-
-        // Clear
-        gc.clearRect(0, 0, width, height);
-
-        // Top right
-        gc.setFill(Color.BLACK.deriveColor(0, 1, 1, 0.05));
-        gc.fillPolygon(new double[]{width, width, 0}, new double[]{0, height, 0}, 3);
-
-        // Bottom left
-        gc.setFill(Color.WHITE.deriveColor(0, 1, 0.2, 0.05));
-        gc.fillPolygon(new double[]{0, width, 0}, new double[]{height, height, 0}, 3);
-
-        // Border
-        gc.setStroke(Color.WHITE.deriveColor(0, 1, 0.6, 0.8));
-        gc.strokeRect(0, 0, width, height);
+    void setFadeProgress(double progress) {
+        this.fadeProgress = progress;
+        this.paint();
     }
 
     /**
-     * Paints the canvas with a specific colour and opacity for when it is being hovered over
+     * Finish the fade out animation, going back to showing the value of the block
      */
-    private void paintHover() {
-        if (this.getValue() == 0) {
-            var gc = this.getGraphicsContext2D();
-
-            // Clear
-            gc.clearRect(0, 0, width, height);
-
-            // Top right
-            gc.setFill(Color.WHITE.deriveColor(0, 1, 1, 0.2));
-            gc.fillPolygon(new double[]{width, width, 0}, new double[]{0, height, 0}, 3);
-
-            // Bottom left
-            gc.setFill(Color.WHITE.deriveColor(0, 1, 1, 0.2));
-            gc.fillPolygon(new double[]{0, width, 0}, new double[]{height, height, 0}, 3);
-
-            // Border
-            gc.setStroke(Color.WHITE.deriveColor(0, 1, 0.6, 0.8));
-            gc.strokeRect(0, 0, width, height);
-        }
-        else {
-            this.setOpacity(0.5);
-        }
+    void endFade() {
+        this.inFadeOutAnimation = false;
+        this.paint();
     }
 
     /**
-     * Paint this canvas with the given colour
-     * @param colour the colour to paint
+     * Ask for the block to be painted. The board paints it on the next frame, once however many times this is called.
      */
-    private void paintColor(Color colour) {
-        var gc = getGraphicsContext2D();
-
-        // Clear
-        gc.clearRect(0, 0, width, height);
-
-        // Top right
-        gc.setFill(colour.deriveColor(0, 1, 0.8, 1));
-        gc.fillPolygon(new double[]{width, width, 0}, new double[]{0, height, 0}, 3);
-
-        // Bottom left
-        gc.setFill(colour.deriveColor(0, 1, 1.2, 1));
-        gc.fillPolygon(new double[]{0, width, 0}, new double[]{height, height, 0}, 3);
-
-        // Border
-        gc.setStroke(Color.WHITE.deriveColor(0, 1, 0.6, 0.8));
-        gc.strokeRect(0, 0, width, height);
+    public void paint() {
+        parentGameBoard.requestRepaint(this);
     }
 
     /**
-     * Paint this canvas with the given colour, but with no nice looking tiling
-     * @param colour the colour to paint
+     * Paint the block as it is now, with the tile for the fade out, the hover effect or its value. Called by the board
+     * once per frame for each block that asked to be painted.
      */
-    private void paintColorBasic(Color colour) {
-        var gc = getGraphicsContext2D();
-
-        //Clear
-        gc.clearRect(0,0,width,height);
-
-        //Colour fill
-        gc.setFill(colour);
-        gc.fillRect(0,0, width, height);
+    void render() {
+        int tile;
+        if (this.inFadeOutAnimation) {
+            tile = TileAtlas.fadeTile(fadeProgress);
+        } else if (this.hovered) {
+            // Shade the block if the current piece cannot be played here
+            boolean illegal = this.getValue() == 0 && this.isPartOfGameBoard
+                    && !this.parentGameBoard.isLegalPlacement(this.x, this.y);
+            tile = TileAtlas.tile(illegal ? TileAtlas.HOVER_ILLEGAL : TileAtlas.HOVER, this.getValue());
+        } else {
+            tile = TileAtlas.tile(displayIndicator ? TileAtlas.INDICATOR : TileAtlas.NORMAL, this.getValue());
+        }
 
-        // Border
-        gc.setStroke(Color.WHITE.deriveColor(0, 1, 0.6, 0.8));
-        gc.strokeRect(0, 0, width, height);
+        graphics.clearRect(originX, originY, width, height);
+        atlas.draw(graphics, tile, originX, originY);
     }
 
     /**
@@ -354,7 +308,7 @@ public class GameBlock extends Canvas {
      * @return value
      */
     public int getValue() {
-        return this.value.get();
+        return this.value;
     }
 
     /**
@@ -366,11 +320,31 @@ public class GameBlock extends Canvas {
     }
 
     /**
-     * Bind the value of this block to another property. Used to link the visual block to a corresponding block in the Grid.
-     * @param input property to bind the value to
+     * Returns the packed coordinate for this block
+     * @return the packed coordinate for this block
+     */
+    public int getPackedCoordinate() {
+        return PackedCoordinate.of(this.x, this.y);
+    }
+
+    /**
+     * Set the value of this block. Used to keep the visual block in step with the corresponding block in the Grid.
+     * @param value the new value
+     */
+    public void setValue(int value) {
+        if (this.value == value) return;
+        this.value = value;
+
+        // The fade out paints the block once it has finished, showing the new value
+        if (!this.inFadeOutAnimation) paint();
+    }
+
+    /**
+     * Get the canvas of this block, which the board adds to the scene when it uses the blocks renderer
+     * @return the canvas, or null if the block draws into the board's canvas
      */
-    public void bind(ObservableValue<? extends Number> input) {
-        value.bind(input);
+    public Canvas getCanvas() {
+        return canvas;
     }
 
 }
@@ -1,6 +1,7 @@
 package uk.ac.soton.comp1206.component;
 
 import javafx.beans.NamedArg;
+import uk.ac.soton.comp1206.game.PackedCoordinate;
 
 /**
  * Represents a row and column representation of a block in the grid. Holds the x (column) and y (row).
@@ -19,11 +20,6 @@ public class GameBlockCoordinate {
      */
     private final int y;
 
-    /**
-     * A hash is computed to enable comparisons between this and other GameBlockCoordinates.
-     */
-    private int hash = 0;
-
 
     /**
      * Create a new GameBlockCoordinate which stores a row and column reference to a block
@@ -109,13 +105,7 @@ public class GameBlockCoordinate {
      * @return hash code
      */
     @Override public int hashCode() {
-        if (hash == 0) {
-            long bits = 7L;
-            bits = 31L * bits + Double.doubleToLongBits(getX());
-            bits = 31L * bits + Double.doubleToLongBits(getY());
-            hash = (int) (bits ^ (bits >> 32));
-        }
-        return hash;
+        return PackedCoordinate.of(x, y);
     }
 
     /**
@@ -1,14 +1,17 @@
 package uk.ac.soton.comp1206.component;
 
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
+import uk.ac.soton.comp1206.game.CellSet;
+import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.game.Grid;
-
-import java.util.Set;
+import uk.ac.soton.comp1206.game.PackedCoordinate;
 
 /**
  * A GameBoard is a visual component to represent the visual GameBoard.
@@ -19,6 +22,17 @@ import java.util.Set;
  * <p>
  * The GameBoard is only a visual representation and should not contain game logic or model logic in it, which should
  * take place in the Grid.
+ * <p>
+ * By default the whole board is drawn into a single Canvas, with each GameBlock painting its own part of it and mouse
+ * events worked out from the position in the canvas. The GameBlocks are then plain objects, so the scene only holds
+ * one Node for the board however many blocks it has. The older renderer, with a Canvas for every block, can be chosen
+ * with setDefaultRenderer or by starting the game with -Dtetrecs.renderer=blocks.
+ * <p>
+ * Blocks are not painted as soon as they change. Instead they are marked as dirty, and an AnimationTimer paints each
+ * dirty block once on the next frame, so a block that changes several times in a frame (a line clear, a piece being
+ * swapped in a PieceBoard) is only painted once. The same timer runs the fade out animations of every block on the
+ * board, working out how far through each fade is from when it started, so any number of blocks can fade at once for
+ * the cost of one timer. The timer stops while nothing is dirty or fading.
  */
 public class GameBoard extends GridPane {
 
@@ -27,6 +41,27 @@ public class GameBoard extends GridPane {
      */
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
+    /**
+     * The ways a board can be drawn
+     */
+    public enum Renderer {
+        /**
+         * Draw the whole board into one Canvas
+         */
+        CANVAS,
+
+        /**
+         * Give every block a Canvas of its own
+         */
+        BLOCKS
+    }
+
+    /**
+     * The renderer used by boards created from now on
+     */
+    private static Renderer defaultRenderer =
+            "blocks".equalsIgnoreCase(System.getProperty("tetrecs.renderer")) ? Renderer.BLOCKS : Renderer.CANVAS;
+
     /**
      * Number of columns in the board
      */
@@ -57,6 +92,61 @@ public class GameBoard extends GridPane {
      */
      protected GameBlock[][] blocks;
 
+    /**
+     * The renderer this board uses
+     */
+    private final Renderer renderer = defaultRenderer;
+
+    /**
+     * The canvas the whole board is drawn into, when using the canvas renderer
+     */
+    private Canvas boardCanvas;
+
+    /**
+     * The block the mouse is over, when using the canvas renderer
+     */
+    private GameBlock mouseBlock;
+
+    /**
+     * The blocks waiting to be painted on the next frame
+     */
+    private CellSet dirtyBlocks;
+
+    /**
+     * Paints the dirty blocks once per frame
+     */
+    private final AnimationTimer renderLoop = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            render(now);
+        }
+    };
+
+    /**
+     * The blocks that are fading out
+     */
+    private CellSet fadingBlocks;
+
+    /**
+     * The time each fading block started to fade, in nanoseconds, indexed by row then column
+     */
+    private long[] fadeStarts;
+
+    /**
+     * Whether the render loop is running
+     */
+    private boolean rendering;
+
+    /**
+     * The number of times a block has asked to be painted
+     */
+    private long repaintsRequested;
+
+    /**
+     * The number of times a block has been painted
+     */
+    private long repaintsPerformed;
+
     /**
      * The listener to call when a specific block is clicked
      */
@@ -67,6 +157,25 @@ public class GameBoard extends GridPane {
      */
     public GameBlock gameBlockCurrentlySelected;
 
+    /**
+     * The block showing the hover effect, which the mouse and the keyboard both move
+     */
+    private GameBlock hoveredBlock;
+
+    /**
+     * The piece the player is placing, used to shade the blocks it cannot be played on
+     */
+    private GamePiece placementPiece;
+
+    /**
+     * The legal centres of the piece being placed, one word per row with bit x set when it fits centred on column x
+     */
+    private long[] legalPlacements;
+
+    /**
+     * Whether the legal centres need finding again, because the grid or the piece being placed has changed
+     */
+    private boolean placementsDirty;
 
     /**
      * Create a new GameBoard, based off a given grid, with a visual width and height.
@@ -127,9 +236,21 @@ public class GameBoard extends GridPane {
         setMaxWidth(width);
         setMaxHeight(height);
 
-        setGridLinesVisible(true);
-
         blocks = new GameBlock[cols][rows];
+        dirtyBlocks = new CellSet(rows);
+        fadingBlocks = new CellSet(rows);
+        fadeStarts = new long[cols * rows];
+
+        if (renderer == Renderer.CANVAS) {
+            // One canvas for the whole board, passing mouse events on to the block under the mouse
+            boardCanvas = new Canvas(width, height);
+            boardCanvas.setOnMouseMoved(e -> mouseMoved(blockAt(e.getX(), e.getY())));
+            boardCanvas.setOnMouseExited(e -> mouseMoved(null));
+            boardCanvas.setOnMouseClicked(e -> blockClicked(e, blockAt(e.getX(), e.getY())));
+            this.add(boardCanvas, 0, 0);
+        } else {
+            setGridLinesVisible(true);
+        }
 
         for(var y = 0; y < this.getRows(); y++) {
             for (var x = 0; x < this.getCols(); x++) {
@@ -138,6 +259,146 @@ public class GameBoard extends GridPane {
         }
 
         gameBlockCurrentlySelected = this.getBlock(0, 0);
+        legalPlacements = new long[rows];
+
+        // Keep the blocks in step with the grid
+        grid.addListener(this::gridChanged);
+    }
+
+    /**
+     * Triggered once for each update to the grid. Updates the blocks on the board that changed.
+     * @param changedCells one word per row, with bit x set when the block in column x changed
+     */
+    private void gridChanged(long[] changedCells) {
+        placementsDirty = true;
+
+        for (int y = 0; y < changedCells.length; y++) {
+            for (long remaining = changedCells[y]; remaining != 0; remaining &= remaining - 1) {
+                int x = Long.numberOfTrailingZeros(remaining);
+                blocks[x][y].setValue(grid.getGridValue(x, y));
+            }
+        }
+    }
+
+    /**
+     * Mark a block as needing to be painted on the next frame
+     * @param block the block
+     */
+    void requestRepaint(GameBlock block) {
+        repaintsRequested++;
+        dirtyBlocks.add(block.getX(), block.getY());
+        startRendering();
+    }
+
+    /**
+     * Start the fade out animation of a block
+     * @param block the block
+     */
+    void startFade(GameBlock block) {
+        fadingBlocks.add(block.getX(), block.getY());
+        fadeStarts[block.getY() * cols + block.getX()] = System.nanoTime();
+        startRendering();
+    }
+
+    /**
+     * Start the render loop if it is not already running
+     */
+    private void startRendering() {
+        if (!rendering) {
+            rendering = true;
+            renderLoop.start();
+        }
+    }
+
+    /**
+     * Move the fading blocks on, then paint every dirty block. Stops the render loop if there is nothing to do.
+     * @param now the time of this frame in nanoseconds
+     */
+    private void render(long now) {
+        if (!fadingBlocks.isEmpty()) advanceFades(now);
+
+        if (dirtyBlocks.isEmpty()) {
+            rendering = false;
+            renderLoop.stop();
+            return;
+        }
+
+        for (int cell = dirtyBlocks.first(); cell != PackedCoordinate.NONE; cell = dirtyBlocks.next(cell)) {
+            GameBlock block = blocks[PackedCoordinate.getX(cell)][PackedCoordinate.getY(cell)];
+            if (block != null) {
+                block.render();
+                repaintsPerformed++;
+            }
+        }
+        dirtyBlocks.clear();
+    }
+
+    /**
+     * Move every fading block on to where it should be at the given time, ending the ones that have finished
+     * @param now the time of this frame in nanoseconds
+     */
+    private void advanceFades(long now) {
+        double fadeNanos = TileAtlas.FADE_MILLIS * 1_000_000;
+
+        for (int cell = fadingBlocks.first(); cell != PackedCoordinate.NONE; cell = fadingBlocks.next(cell)) {
+            int x = PackedCoordinate.getX(cell);
+            int y = PackedCoordinate.getY(cell);
+            double progress = Math.max(0, now - fadeStarts[y * cols + x]) / fadeNanos;
+
+            if (progress >= 1) {
+                fadingBlocks.remove(x, y);
+                blocks[x][y].endFade();
+            } else {
+                blocks[x][y].setFadeProgress(progress);
+            }
+        }
+    }
+
+    /**
+     * Get the number of times a block on this board has asked to be painted
+     * @return the number of repaints requested
+     */
+    public long getRepaintsRequested() {
+        return repaintsRequested;
+    }
+
+    /**
+     * Get the number of times a block on this board has been painted. The gap to the number requested is the number
+     * of paints saved by only painting each block once per frame.
+     * @return the number of repaints performed
+     */
+    public long getRepaintsPerformed() {
+        return repaintsPerformed;
+    }
+
+    /**
+     * Set the piece the player is placing, so hovering over a block where it cannot be played shows it is invalid
+     * @param gamePiece the piece being placed, or null to stop shading
+     */
+    public void setPlacementPiece(GamePiece gamePiece) {
+        this.placementPiece = gamePiece;
+        this.placementsDirty = true;
+
+        // The hovered block may have changed between valid and invalid
+        if (hoveredBlock != null) hoveredBlock.repaintHover();
+    }
+
+    /**
+     * Get whether the piece being placed can be played centred on a block. The legal centres are only found again
+     * after the grid or piece changes, so hovering over the board does not check the grid every time.
+     * @param x column
+     * @param y row
+     * @return whether the piece can be played there, or true if no piece is being placed
+     */
+    public boolean isLegalPlacement(int x, int y) {
+        if (placementPiece == null) return true;
+
+        if (placementsDirty) {
+            grid.legalShapePlacements(placementPiece.getShape(), legalPlacements);
+            placementsDirty = false;
+        }
+
+        return (legalPlacements[y] & (1L << x)) != 0;
     }
 
     /**
@@ -149,21 +410,105 @@ public class GameBoard extends GridPane {
         var blockWidth = width / this.getCols();
         var blockHeight = height / this.getRows();
 
+        // With the canvas renderer the block draws into the board's canvas and is not added to the scene
+        if (renderer == Renderer.CANVAS) {
+            GameBlock block = new GameBlock(this, x, y, blockWidth, blockHeight, boardCanvas.getGraphicsContext2D());
+            blocks[x][y] = block;
+            block.setValue(grid.getGridValue(x, y));
+            return;
+        }
+
         // Create a new GameBlock UI component
         GameBlock block = new GameBlock(this, x, y, blockWidth, blockHeight);
 
-        // Add to the GridPane
-        this.add(block, x, y);
+        // Add its canvas to the GridPane
+        this.add(block.getCanvas(), x, y);
 
         // Add to our block directory
         blocks[x][y] = block;
 
-        // Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x,y));
+        // Show the current value of the corresponding block in the Grid
+        block.setValue(grid.getGridValue(x, y));
 
         // Add a mouse click handler to the block to trigger GameBoard blockClicked method
-        block.setOnMouseClicked((e) -> blockClicked(e, block));
+        block.getCanvas().setOnMouseClicked((e) -> blockClicked(e, block));
+
+    }
+
+    /**
+     * Find the block at a position in the board's canvas
+     * @param x the horizontal position
+     * @param y the vertical position
+     * @return the block at that position, or the nearest one if the position is on the edge
+     */
+    private GameBlock blockAt(double x, double y) {
+        int col = Math.min(Math.max((int) (x * cols / width), 0), cols - 1);
+        int row = Math.min(Math.max((int) (y * rows / height), 0), rows - 1);
+        return blocks[col][row];
+    }
+
+    /**
+     * Triggered when the mouse moves over the board's canvas. Passes on the mouse entering and leaving blocks, the
+     * same as if each block was its own canvas.
+     * @param block the block the mouse is now over, or null if it has left the board
+     */
+    private void mouseMoved(GameBlock block) {
+        if (block == mouseBlock) return;
+
+        if (mouseBlock != null) mouseBlock.onHover(GameBlock.EnterOrExit.EXIT);
+        mouseBlock = block;
+        if (block != null) block.onHover(GameBlock.EnterOrExit.ENTER);
+    }
+
+    /**
+     * Move the hover effect to a block, which also selects it. Only the block that was hovered and the new one are
+     * repainted.
+     * @param block the block to hover
+     */
+    public void hoverBlock(GameBlock block) {
+        if (hoveredBlock != null && hoveredBlock != block) hoveredBlock.setHovered(false);
+
+        hoveredBlock = block;
+        gameBlockCurrentlySelected = block;
+        block.setHovered(true);
+    }
+
+    /**
+     * Take the hover effect off a block, if it has it
+     * @param block the block
+     */
+    public void unhoverBlock(GameBlock block) {
+        if (hoveredBlock != block) return;
+
+        hoveredBlock = null;
+        block.setHovered(false);
+    }
+
+    /**
+     * Move the selected block with the keyboard controls, wrapping around the edges of the board, and hover it
+     * @param x columns to move by
+     * @param y rows to move by
+     */
+    public void moveSelection(int x, int y) {
+        int coordinate = PackedCoordinate.addWrapped(gameBlockCurrentlySelected.getPackedCoordinate(), x, y, cols,
+                rows);
+        hoverBlock(blocks[PackedCoordinate.getX(coordinate)][PackedCoordinate.getY(coordinate)]);
+    }
 
+    /**
+     * Set the renderer used by boards created from now on
+     * @param renderer the renderer
+     */
+    public static void setDefaultRenderer(Renderer renderer) {
+        defaultRenderer = renderer;
+    }
+
+    /**
+     * Get the renderer this board uses
+     * @return the renderer
+     */
+    public Renderer getRenderer() {
+        return renderer;
     }
 
     /**
@@ -193,13 +538,14 @@ public class GameBoard extends GridPane {
     }
 
     /**
-     * Fades out the blocks in the given game block coordinates
+     * Fades out the given blocks
      * @param blocks the set of blocks to fade out
      */
-    public void fadeOut(Set<GameBlockCoordinate> blocks) {
-        for (GameBlockCoordinate coordinate : blocks) {
-            GameBlock block = getBlock(coordinate.getX(), coordinate.getY());
-            if (block != null) block.fadeOut();
+    public void fadeOut(CellSet blocks) {
+        for (int cell = blocks.first(); cell != PackedCoordinate.NONE; cell = blocks.next(cell)) {
+            int x = PackedCoordinate.getX(cell);
+            int y = PackedCoordinate.getY(cell);
+            if (x < cols && y < rows) this.blocks[x][y].fadeOut();
         }
     }
 
@@ -61,8 +61,11 @@ public class PieceBoard extends GameBoard {
      * @param pieceToDisplay the piece to display
      */
     public void displayPiece(GamePiece pieceToDisplay) {
+        // Swap the pieces in one update, so blocks in both are only repainted once
+        this.grid.beginUpdate();
         this.grid.clearGrid();
         GameBlockCoordinate gridCentre = this.grid.getGridCentre();
         this.grid.playPiece(pieceToDisplay, gridCentre.getX(), gridCentre.getY());
+        this.grid.endUpdate();
     }
 }
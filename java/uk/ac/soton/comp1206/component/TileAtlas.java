@@ -0,0 +1,352 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.Interpolator;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
+import javafx.stage.Screen;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every way a GameBlock can look, drawn once into a single image for each block size.
+ * <p>
+ * There is a tile for each of the GameBlock colours in each state (normal, with the indicator, hovered and hovered
+ * where the piece cannot be played), and a tile for each step of the fade out animation. Painting a block is then
+ * a single drawImage from the atlas, which costs the same whatever the block looks like and creates no objects.
+ * <p>
+ * Atlases are kept for each block size, so every board with the same size of block shares one.
+ */
+public class TileAtlas {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(TileAtlas.class);
+
+    /**
+     * The state of a block showing its colour
+     */
+    public static final int NORMAL = 0;
+
+    /**
+     * The state of a block showing its colour with the circle indicator on it
+     */
+    public static final int INDICATOR = 1;
+
+    /**
+     * The state of a block being hovered over
+     */
+    public static final int HOVER = 2;
+
+    /**
+     * The state of an empty block being hovered over where the current piece cannot be played
+     */
+    public static final int HOVER_ILLEGAL = 3;
+
+    /**
+     * The number of states
+     */
+    private static final int STATES = 4;
+
+    /**
+     * The number of steps the fade out animation is drawn in
+     */
+    public static final int FADE_STEPS = 32;
+
+    /**
+     * The length of the fade out animation in milliseconds
+     */
+    public static final double FADE_MILLIS = 600;
+
+    /**
+     * How far through the fade out the block turns fully green
+     */
+    private static final double FADE_GREEN = 0.2 / 0.6;
+
+    /**
+     * The number of tiles in each row of the image
+     */
+    private static final int COLUMNS = 16;
+
+    /**
+     * The index of the first fade out tile, after the tiles for every state
+     */
+    private static final int FADE_BASE = STATES * COLUMNS;
+
+    /**
+     * The gap left around each tile, so drawing part of the image does not pick up the edge of the next tile
+     */
+    private static final int PADDING = 1;
+
+    /**
+     * The atlases made so far, for each block size
+     */
+    private static final Map<String, TileAtlas> atlases = new HashMap<>();
+
+    /**
+     * The image holding the tiles
+     */
+    private final WritableImage image;
+
+    /**
+     * The width of a tile on screen
+     */
+    private final double width;
+
+    /**
+     * The height of a tile on screen
+     */
+    private final double height;
+
+    /**
+     * The scale the tiles are drawn into the image at, so they stay sharp on high resolution screens
+     */
+    private final double scale;
+
+    /**
+     * The distance between the left edges of neighbouring tiles in the image
+     */
+    private final double strideX;
+
+    /**
+     * The distance between the top edges of neighbouring tiles in the image
+     */
+    private final double strideY;
+
+    /**
+     * Draw the tiles for a block size
+     * @param width the width of a block
+     * @param height the height of a block
+     * @param scale the scale to draw the image at
+     */
+    private TileAtlas(double width, double height, double scale) {
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.strideX = Math.ceil(width * scale) + 2 * PADDING;
+        this.strideY = Math.ceil(height * scale) + 2 * PADDING;
+
+        int tiles = STATES * GameBlock.COLOURS.length + FADE_STEPS;
+        int rows = (tiles + COLUMNS - 1) / COLUMNS;
+
+        // Draw every tile onto a canvas with the same calls the blocks used to make, then copy it into the image
+        Canvas canvas = new Canvas(COLUMNS * strideX / scale, rows * strideY / scale);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+
+        for (int state = 0; state < STATES; state++) {
+            for (int value = 0; value < GameBlock.COLOURS.length; value++) {
+                startTile(gc, tile(state, value));
+                drawBlock(gc, state, value);
+                gc.restore();
+            }
+        }
+        for (int step = 0; step < FADE_STEPS; step++) {
+            startTile(gc, FADE_BASE + step);
+            drawFade(gc, (double) step / (FADE_STEPS - 1));
+            gc.restore();
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        parameters.setTransform(Transform.scale(scale, scale));
+        this.image = canvas.snapshot(parameters, new WritableImage(COLUMNS * (int) strideX, rows * (int) strideY));
+
+        logger.debug("Drew tile atlas for {} x {} blocks: {} x {}", width, height, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Get the atlas for a block size, drawing it if it has not been used before. Must be called on the fx thread.
+     * @param width the width of a block
+     * @param height the height of a block
+     * @return the atlas
+     */
+    public static TileAtlas get(double width, double height) {
+        double scale = Screen.getPrimary().getOutputScaleX();
+        String key = width + "x" + height + "@" + scale;
+        return atlases.computeIfAbsent(key, k -> new TileAtlas(width, height, scale));
+    }
+
+    /**
+     * Get the index of the tile for a block
+     * @param state the state of the block
+     * @param value the value of the block
+     * @return the tile index
+     */
+    public static int tile(int state, int value) {
+        return state * COLUMNS + value;
+    }
+
+    /**
+     * Get the index of the tile for a point in the fade out animation
+     * @param progress how far through the animation, from 0 to 1
+     * @return the tile index
+     */
+    public static int fadeTile(double progress) {
+        int step = (int) Math.round(Math.min(Math.max(progress, 0), 1) * (FADE_STEPS - 1));
+        return FADE_BASE + step;
+    }
+
+    /**
+     * Draw a tile
+     * @param gc the graphics context to draw into
+     * @param tile the index of the tile
+     * @param x the left edge to draw it at
+     * @param y the top edge to draw it at
+     */
+    public void draw(GraphicsContext gc, int tile, double x, double y) {
+        double sourceX = (tile % COLUMNS) * strideX + PADDING;
+        double sourceY = (tile / COLUMNS) * strideY + PADDING;
+        gc.drawImage(image, sourceX, sourceY, width * scale, height * scale, x, y, width, height);
+    }
+
+    /**
+     * Get ready to draw one tile onto the atlas canvas, moving to its place and clipping to its edges so it can be
+     * drawn from 0,0 to width,height. The graphics context must be restored once the tile is drawn.
+     * @param gc the atlas canvas
+     * @param tile the index of the tile
+     */
+    private void startTile(GraphicsContext gc, int tile) {
+        gc.save();
+        gc.translate(((tile % COLUMNS) * strideX + PADDING) / scale, ((tile / COLUMNS) * strideY + PADDING) / scale);
+        gc.beginPath();
+        gc.rect(0, 0, width, height);
+        gc.clip();
+    }
+
+    /**
+     * Draw a block in a state
+     * @param gc the graphics context
+     * @param state the state
+     * @param value the value of the block
+     */
+    private void drawBlock(GraphicsContext gc, int state, int value) {
+        if (value == 0) {
+            switch (state) {
+                case HOVER -> drawHoverEmpty(gc, false);
+                case HOVER_ILLEGAL -> drawHoverEmpty(gc, true);
+                default -> drawEmpty(gc);
+            }
+            return;
+        }
+
+        // Hovering over a filled block shows it see-through
+        if (state == HOVER || state == HOVER_ILLEGAL) gc.setGlobalAlpha(0.5);
+        drawColour(gc, GameBlock.COLOURS[value]);
+
+        if (state == INDICATOR) {
+            double radius = Math.min(width, height) / 4;
+            gc.setFill(Color.WHITE.deriveColor(0, 1, 1, 0.5));
+            gc.fillOval((width / 2) - radius, (height / 2) - radius, radius * 2, radius * 2);
+        }
+    }
+
+    /**
+     * Draw an empty block
+     * @param gc the graphics context
+     */
+    private void drawEmpty(GraphicsContext gc) {
+        // Top right
+        gc.setFill(Color.BLACK.deriveColor(0, 1, 1, 0.05));
+        gc.fillPolygon(new double[]{width, width, 0}, new double[]{0, height, 0}, 3);
+
+        // Bottom left
+        gc.setFill(Color.WHITE.deriveColor(0, 1, 0.2, 0.05));
+        gc.fillPolygon(new double[]{0, width, 0}, new double[]{height, height, 0}, 3);
+
+        drawBorder(gc);
+    }
+
+    /**
+     * Draw an empty block being hovered over
+     * @param gc the graphics context
+     * @param illegal whether to shade the block because the current piece cannot be played there
+     */
+    private void drawHoverEmpty(GraphicsContext gc, boolean illegal) {
+        // Top right
+        gc.setFill(Color.WHITE.deriveColor(0, 1, 1, 0.2));
+        gc.fillPolygon(new double[]{width, width, 0}, new double[]{0, height, 0}, 3);
+
+        // Bottom left
+        gc.setFill(Color.WHITE.deriveColor(0, 1, 1, 0.2));
+        gc.fillPolygon(new double[]{0, width, 0}, new double[]{height, height, 0}, 3);
+
+        // Shade the block if the current piece cannot be played here
+        if (illegal) {
+            gc.setFill(Color.RED.deriveColor(0, 1, 1, 0.3));
+            gc.fillRect(0, 0, width, height);
+        }
+
+        drawBorder(gc);
+    }
+
+    /**
+     * Draw a block with the given colour
+     * @param gc the graphics context
+     * @param colour the colour
+     */
+    private void drawColour(GraphicsContext gc, Color colour) {
+        // Top right
+        gc.setFill(colour.deriveColor(0, 1, 0.8, 1));
+        gc.fillPolygon(new double[]{width, width, 0}, new double[]{0, height, 0}, 3);
+
+        // Bottom left
+        gc.setFill(colour.deriveColor(0, 1, 1.2, 1));
+        gc.fillPolygon(new double[]{0, width, 0}, new double[]{height, height, 0}, 3);
+
+        drawBorder(gc);
+    }
+
+    /**
+     * Draw a step of the fade out animation: a plain square of the fade colour at the fade opacity
+     * @param gc the graphics context
+     * @param progress how far through the animation, from 0 to 1
+     */
+    private void drawFade(GraphicsContext gc, double progress) {
+        gc.setGlobalAlpha(fadeOpacity(progress));
+
+        gc.setFill(fadeColour(progress));
+        gc.fillRect(0, 0, width, height);
+
+        drawBorder(gc);
+    }
+
+    /**
+     * Draw the border around a block
+     * @param gc the graphics context
+     */
+    private void drawBorder(GraphicsContext gc) {
+        gc.setStroke(Color.WHITE.deriveColor(0, 1, 0.6, 0.8));
+        gc.strokeRect(0, 0, width, height);
+    }
+
+    /**
+     * Get the colour of a block part way through the fade out: white to green, then easing back out to white
+     * @param progress how far through the animation, from 0 to 1
+     * @return the colour
+     */
+    public static Color fadeColour(double progress) {
+        if (progress < FADE_GREEN) return Color.WHITE.interpolate(Color.GREEN, progress / FADE_GREEN);
+
+        double fraction = (progress - FADE_GREEN) / (1 - FADE_GREEN);
+        return Color.GREEN.interpolate(Color.WHITE, Interpolator.EASE_OUT.interpolate(0.0, 1.0, fraction));
+    }
+
+    /**
+     * Get the opacity of a block part way through the fade out: dimming a little, then easing in to nothing
+     * @param progress how far through the animation, from 0 to 1
+     * @return the opacity
+     */
+    public static double fadeOpacity(double progress) {
+        if (progress < FADE_GREEN) return 1 - 0.3 * progress / FADE_GREEN;
+
+        double fraction = (progress - FADE_GREEN) / (1 - FADE_GREEN);
+        return 0.7 * (1 - Interpolator.EASE_IN.interpolate(0.0, 1.0, fraction));
+    }
+}
@@ -0,0 +1,31 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * The base class of the events published on a GameEventBus. Events are immutable, so they can be handed to other
+ * threads after the game has moved on.
+ */
+public abstract class GameEvent {
+
+    /**
+     * The game the event happened in
+     */
+    private final GameEngine game;
+
+    /**
+     * Create a new event
+     * @param game the game the event happened in
+     */
+    protected GameEvent(GameEngine game) {
+        this.game = game;
+    }
+
+    /**
+     * Get the game the event happened in
+     * @return the game
+     */
+    public GameEngine getGame() {
+        return game;
+    }
+}
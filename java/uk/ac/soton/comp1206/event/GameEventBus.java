@@ -0,0 +1,270 @@
+package uk.ac.soton.comp1206.event;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Delivers typed game events to any number of subscribers. Unlike the single listener setters, which only hold one
+ * listener each, any number of components can subscribe to the same type of event.
+ * <p>
+ * There are two ways to subscribe. Synchronous subscribers are called on the publishing thread before publish returns,
+ * which is what the engine, simulations and anything else that must see every event in order should use. Coalesced
+ * subscribers are queued and handed to the coalesced executor in a single batch, so however many events are published
+ * while the batch is waiting, the UI thread only gets one runnable to run. Subscribing to GameEvent receives every
+ * type of event.
+ */
+public class GameEventBus {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(GameEventBus.class);
+
+    /**
+     * The subscriptions for each type of event
+     */
+    private final Map<Class<?>, List<Subscription<?>>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * The number of subscriptions, so publishing can be skipped when nothing is listening
+     */
+    private volatile int subscriberCount;
+
+    /**
+     * The coalesced deliveries waiting for the next batch
+     */
+    private final ConcurrentLinkedQueue<Delivery> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Whether a batch has been handed to the executor and not started yet
+     */
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    /**
+     * The executor coalesced batches are run on
+     */
+    private volatile Executor coalescedExecutor = Runnable::run;
+
+    /**
+     * Set the executor coalesced batches are run on, such as Platform::runLater. By default they run straight away on
+     * the publishing thread.
+     * @param executor the executor
+     */
+    public void setCoalescedExecutor(Executor executor) {
+        this.coalescedExecutor = executor;
+    }
+
+    /**
+     * Subscribe to a type of event, with the handler called on the publishing thread
+     * @param type the type of event, or GameEvent for all events
+     * @param handler the handler
+     * @param <E> the type of event
+     * @return the subscription, which can be used to unsubscribe
+     */
+    public <E extends GameEvent> Subscription<E> subscribe(Class<E> type, Consumer<? super E> handler) {
+        return add(new Subscription<>(type, handler, false));
+    }
+
+    /**
+     * Subscribe to a type of event, with the handler called in batches on the coalesced executor
+     * @param type the type of event, or GameEvent for all events
+     * @param handler the handler
+     * @param <E> the type of event
+     * @return the subscription, which can be used to unsubscribe
+     */
+    public <E extends GameEvent> Subscription<E> subscribeCoalesced(Class<E> type, Consumer<? super E> handler) {
+        return add(new Subscription<>(type, handler, true));
+    }
+
+    /**
+     * Add a subscription
+     * @param subscription the subscription
+     * @param <E> the type of event
+     * @return the subscription
+     */
+    private <E extends GameEvent> Subscription<E> add(Subscription<E> subscription) {
+        subscriptions.computeIfAbsent(subscription.type, type -> new CopyOnWriteArrayList<>()).add(subscription);
+        synchronized (this) {
+            subscriberCount++;
+        }
+        return subscription;
+    }
+
+    /**
+     * Remove a subscription
+     * @param subscription the subscription
+     */
+    private void remove(Subscription<?> subscription) {
+        List<Subscription<?>> list = subscriptions.get(subscription.type);
+        if (list != null && list.remove(subscription)) {
+            synchronized (this) {
+                subscriberCount--;
+            }
+        }
+    }
+
+    /**
+     * Get whether anything is subscribed to a type of event. Publishers check this first so they don't create events
+     * nobody will receive.
+     * @param type the type of event
+     * @return whether there are any subscribers
+     */
+    public boolean hasSubscribers(Class<? extends GameEvent> type) {
+        if (subscriberCount == 0) return false;
+
+        List<Subscription<?>> all = subscriptions.get(GameEvent.class);
+        if (all != null && !all.isEmpty()) return true;
+
+        List<Subscription<?>> list = subscriptions.get(type);
+        return list != null && !list.isEmpty();
+    }
+
+    /**
+     * Publish an event to its subscribers and to the subscribers of all events
+     * @param event the event
+     */
+    public void publish(GameEvent event) {
+        if (subscriberCount == 0) return;
+
+        boolean queued = deliver(subscriptions.get(event.getClass()), event);
+        if (event.getClass() != GameEvent.class) {
+            queued |= deliver(subscriptions.get(GameEvent.class), event);
+        }
+
+        // Only one batch is waiting on the executor at a time, and it takes everything queued before it runs
+        if (queued && drainScheduled.compareAndSet(false, true)) {
+            coalescedExecutor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Deliver an event to a list of subscriptions, calling synchronous ones and queueing coalesced ones
+     * @param list the subscriptions
+     * @param event the event
+     * @return whether any deliveries were queued
+     */
+    private boolean deliver(List<Subscription<?>> list, GameEvent event) {
+        if (list == null) return false;
+
+        boolean queued = false;
+        for (Subscription<?> subscription : list) {
+            if (subscription.coalesced) {
+                pending.add(new Delivery(subscription, event));
+                queued = true;
+            } else {
+                subscription.handle(event);
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Run every queued delivery
+     */
+    private void drain() {
+        // Clear the flag first, so events published while draining schedule another batch
+        drainScheduled.set(false);
+
+        Delivery delivery;
+        while ((delivery = pending.poll()) != null) {
+            delivery.subscription.handle(delivery.event);
+        }
+    }
+
+    /**
+     * A coalesced event waiting to be delivered to a subscription
+     */
+    private static class Delivery {
+
+        /**
+         * The subscription
+         */
+        private final Subscription<?> subscription;
+
+        /**
+         * The event
+         */
+        private final GameEvent event;
+
+        /**
+         * Create a new delivery
+         * @param subscription the subscription
+         * @param event the event
+         */
+        private Delivery(Subscription<?> subscription, GameEvent event) {
+            this.subscription = subscription;
+            this.event = event;
+        }
+    }
+
+    /**
+     * A handler subscribed to a type of event
+     * @param <E> the type of event
+     */
+    public class Subscription<E extends GameEvent> {
+
+        /**
+         * The type of event
+         */
+        private final Class<E> type;
+
+        /**
+         * The handler
+         */
+        private final Consumer<? super E> handler;
+
+        /**
+         * Whether the handler is called in batches on the coalesced executor
+         */
+        private final boolean coalesced;
+
+        /**
+         * Whether the subscription is still active
+         */
+        private volatile boolean active = true;
+
+        /**
+         * Create a new subscription
+         * @param type the type of event
+         * @param handler the handler
+         * @param coalesced whether the handler is called in batches
+         */
+        private Subscription(Class<E> type, Consumer<? super E> handler, boolean coalesced) {
+            this.type = type;
+            this.handler = handler;
+            this.coalesced = coalesced;
+        }
+
+        /**
+         * Call the handler, logging anything it throws so one subscriber can't stop the others
+         * @param event the event
+         */
+        private void handle(GameEvent event) {
+            // Events queued before unsubscribing are dropped
+            if (!active) return;
+
+            try {
+                handler.accept(type.cast(event));
+            } catch (RuntimeException e) {
+                logger.error("Event handler failed for " + event.getClass().getSimpleName(), e);
+            }
+        }
+
+        /**
+         * Stop receiving events
+         */
+        public void unsubscribe() {
+            active = false;
+            remove(this);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * The event for when a game ends
+ */
+public class GameOverEvent extends GameEvent {
+
+    /**
+     * The final score
+     */
+    private final int score;
+
+    /**
+     * The final level
+     */
+    private final int level;
+
+    /**
+     * The number of pieces played
+     */
+    private final int piecesPlayed;
+
+    /**
+     * Create a new game over event
+     * @param game the game that ended
+     * @param score the final score
+     * @param level the final level
+     * @param piecesPlayed the number of pieces played
+     */
+    public GameOverEvent(GameEngine game, int score, int level, int piecesPlayed) {
+        super(game);
+        this.score = score;
+        this.level = level;
+        this.piecesPlayed = piecesPlayed;
+    }
+
+    /**
+     * Get the final score
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the final level
+     * @return the level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the number of pieces played
+     * @return the number of pieces
+     */
+    public int getPiecesPlayed() {
+        return piecesPlayed;
+    }
+}
@@ -0,0 +1,13 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The listener for when the values of blocks in a Grid change
+ */
+public interface GridChangedListener {
+    /**
+     * Triggers the grid changed event with every block that changed in the last update. The new values can be read
+     * from the grid. The array is reused by the grid, so it should not be kept.
+     * @param changedCells one word per row, with bit x set when the block in column x changed
+     */
+    void gridChanged(long[] changedCells);
+}
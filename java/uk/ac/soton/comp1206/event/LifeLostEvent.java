@@ -0,0 +1,32 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * The event for when the game loop timer runs out and a life is lost
+ */
+public class LifeLostEvent extends GameEvent {
+
+    /**
+     * The lives left, which is negative if that was the last life
+     */
+    private final int lives;
+
+    /**
+     * Create a new life lost event
+     * @param game the game the life was lost in
+     * @param lives the lives left
+     */
+    public LifeLostEvent(GameEngine game, int lives) {
+        super(game);
+        this.lives = lives;
+    }
+
+    /**
+     * Get the lives left, which is negative if that was the last life
+     * @return the lives left
+     */
+    public int getLives() {
+        return lives;
+    }
+}
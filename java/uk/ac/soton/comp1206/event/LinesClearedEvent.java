@@ -0,0 +1,88 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * The event for when a piece completes one or more lines and they are cleared
+ */
+public class LinesClearedEvent extends GameEvent {
+
+    /**
+     * The number of lines cleared
+     */
+    private final int lines;
+
+    /**
+     * The number of blocks cleared
+     */
+    private final int blocks;
+
+    /**
+     * The blocks cleared, one word per row with bit x set when the block in column x was cleared
+     */
+    private final long[] clearedCells;
+
+    /**
+     * The score after the lines were cleared
+     */
+    private final int score;
+
+    /**
+     * Create a new lines cleared event
+     * @param game the game the lines were cleared in
+     * @param lines the number of lines cleared
+     * @param blocks the number of blocks cleared
+     * @param clearedCells the blocks cleared, which are copied
+     * @param score the score after the lines were cleared
+     */
+    public LinesClearedEvent(GameEngine game, int lines, int blocks, long[] clearedCells, int score) {
+        super(game);
+        this.lines = lines;
+        this.blocks = blocks;
+        this.clearedCells = clearedCells.clone();
+        this.score = score;
+    }
+
+    /**
+     * Get the number of lines cleared
+     * @return the number of lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the number of blocks cleared
+     * @return the number of blocks
+     */
+    public int getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Get whether a block was cleared
+     * @param x column
+     * @param y row
+     * @return whether the block was cleared
+     */
+    public boolean isCleared(int x, int y) {
+        return (clearedCells[y] & (1L << x)) != 0;
+    }
+
+    /**
+     * Get the blocks cleared in a row
+     * @param y row
+     * @return the row, with bit x set when the block in column x was cleared
+     */
+    public long getClearedRow(int y) {
+        return clearedCells[y];
+    }
+
+    /**
+     * Get the score after the lines were cleared
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,49 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * The event for when the current and following pieces change, either because a new piece was spawned or because they
+ * were swapped
+ */
+public class NextPieceEvent extends GameEvent {
+
+    /**
+     * The type of the new current piece
+     */
+    private final GamePiece.GamePieceType current;
+
+    /**
+     * The type of the new following piece
+     */
+    private final GamePiece.GamePieceType following;
+
+    /**
+     * Create a new next piece event
+     * @param game the game the pieces changed in
+     * @param current the new current piece
+     * @param following the new following piece
+     */
+    public NextPieceEvent(GameEngine game, GamePiece current, GamePiece following) {
+        super(game);
+        this.current = current.getType();
+        this.following = following.getType();
+    }
+
+    /**
+     * Get the type of the new current piece
+     * @return the piece type
+     */
+    public GamePiece.GamePieceType getCurrent() {
+        return current;
+    }
+
+    /**
+     * Get the type of the new following piece
+     * @return the piece type
+     */
+    public GamePiece.GamePieceType getFollowing() {
+        return following;
+    }
+}
@@ -0,0 +1,77 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * The event for when a piece is played on the grid, before any lines are cleared
+ */
+public class PiecePlacedEvent extends GameEvent {
+
+    /**
+     * The type of the piece played
+     */
+    private final GamePiece.GamePieceType type;
+
+    /**
+     * The rotation of the piece played
+     */
+    private final int rotation;
+
+    /**
+     * The column of the centre of the piece
+     */
+    private final int x;
+
+    /**
+     * The row of the centre of the piece
+     */
+    private final int y;
+
+    /**
+     * Create a new piece placed event
+     * @param game the game the piece was played in
+     * @param piece the piece played
+     * @param x column of the centre of the piece
+     * @param y row of the centre of the piece
+     */
+    public PiecePlacedEvent(GameEngine game, GamePiece piece, int x, int y) {
+        super(game);
+        this.type = piece.getType();
+        this.rotation = piece.getRotation();
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Get the type of the piece played
+     * @return the piece type
+     */
+    public GamePiece.GamePieceType getType() {
+        return type;
+    }
+
+    /**
+     * Get the rotation of the piece played
+     * @return the rotation
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the column of the centre of the piece
+     * @return the column
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the row of the centre of the piece
+     * @return the row
+     */
+    public int getY() {
+        return y;
+    }
+}
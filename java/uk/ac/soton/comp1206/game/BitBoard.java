@@ -0,0 +1,117 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Static helpers for working on an occupancy bitboard, an array with one long per row where bit x is set when the
+ * block in column x is filled.
+ * <p>
+ * The Grid keeps its state in this form, and search code can use the same helpers on its own scratch arrays to try
+ * out moves without touching a Grid. None of the helpers allocate.
+ */
+public final class BitBoard {
+
+    /**
+     * This class only has static helpers
+     */
+    private BitBoard() {}
+
+    /**
+     * Get whether a piece shape fits on a bitboard, with its top left block at x and y. Each row of the shape is
+     * shifted onto the matching row of the bitboard and checked with a single AND.
+     * @param occupancy the bitboard
+     * @param cols number of columns on the board
+     * @param rows number of rows on the board
+     * @param shape the shape mask of the piece, as given by {@link GamePiece#getShape()}
+     * @param x column
+     * @param y row
+     * @return whether the shape fits at the given coordinates or not
+     */
+    public static boolean fits(long[] occupancy, int cols, int rows, int shape, int x, int y) {
+        for (int yPiece = 0; yPiece < 3; yPiece++) {
+            int rowMask = (shape >>> (yPiece * 3)) & 0b111;
+            if (rowMask == 0) continue;
+
+            // Check if the row is outside of the board bounds
+            int yGrid = y + yPiece;
+            if (yGrid < 0 || yGrid >= rows) return false;
+
+            // Check if the row spills off either side of the board
+            if (x + Integer.numberOfTrailingZeros(rowMask) < 0) return false;
+            if (x + (31 - Integer.numberOfLeadingZeros(rowMask)) >= cols) return false;
+
+            // Check if any of the positions are not empty
+            if ((occupancy[yGrid] & shiftRow(rowMask, x)) != 0) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Find every place a piece shape fits on a bitboard, in one pass over the rows. The result is given by the centre
+     * of the piece, one offset in from its top left, so it uses the same coordinates as {@link Grid#playPiece}.
+     * @param occupancy the bitboard
+     * @param cols number of columns on the board
+     * @param rows number of rows on the board
+     * @param shape the shape mask of the piece
+     * @param placements filled with one word per row, with bit x set when the piece fits centred on column x
+     */
+    public static void legalCentres(long[] occupancy, int cols, int rows, int shape, long[] placements) {
+        long fullRow = fullRowMask(cols);
+
+        for (int y = 0; y < rows; y++) {
+            long centres = fullRow;
+
+            for (int yPiece = 0; yPiece < 3 && centres != 0; yPiece++) {
+                int rowMask = (shape >>> (yPiece * 3)) & 0b111;
+                if (rowMask == 0) continue;
+
+                // Rows of the piece that fall off the board rule out the whole row of centres
+                int yGrid = y - 1 + yPiece;
+                if (yGrid < 0 || yGrid >= rows) {
+                    centres = 0;
+                    break;
+                }
+
+                // Shift the empty blocks so each one lines up with the centre that would cover it
+                long empty = ~occupancy[yGrid] & fullRow;
+                if ((rowMask & 0b001) != 0) centres &= empty << 1;
+                if ((rowMask & 0b010) != 0) centres &= empty;
+                if ((rowMask & 0b100) != 0) centres &= empty >>> 1;
+            }
+
+            placements[y] = centres & fullRow;
+        }
+    }
+
+    /**
+     * Fills in a piece shape on a bitboard, with its top left block at x and y. The shape must fit.
+     * @param occupancy the bitboard
+     * @param shape the shape mask of the piece
+     * @param x column
+     * @param y row
+     */
+    public static void place(long[] occupancy, int shape, int x, int y) {
+        for (int yPiece = 0; yPiece < 3; yPiece++) {
+            int rowMask = (shape >>> (yPiece * 3)) & 0b111;
+            if (rowMask != 0) occupancy[y + yPiece] |= shiftRow(rowMask, x);
+        }
+    }
+
+    /**
+     * Shifts a row of a piece shape so that its first block lines up with the given column
+     * @param rowMask the 3 bit row of the piece
+     * @param x the column of the first block in the row, which can be negative if the first blocks are empty
+     * @return the row shifted into bitboard position
+     */
+    public static long shiftRow(int rowMask, int x) {
+        return x >= 0 ? (long) rowMask << x : (long) rowMask >>> -x;
+    }
+
+    /**
+     * Get the bitboard word of a completely filled row
+     * @param cols number of columns on the board
+     * @return a mask with the lowest cols bits set
+     */
+    public static long fullRowMask(int cols) {
+        return cols == Long.SIZE ? -1L : (1L << cols) - 1;
+    }
+}
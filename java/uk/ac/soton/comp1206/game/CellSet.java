@@ -0,0 +1,160 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * A set of blocks on a board, held as one long per row with bit x set when the block in column x is in the set. This
+ * is the same layout the Grid uses, so sets of cleared or changed blocks can be copied straight out of it.
+ * <p>
+ * The set is iterated with packed coordinates rather than an Iterator, so walking it creates no objects:
+ * <pre>
+ * for (int cell = set.first(); cell != PackedCoordinate.NONE; cell = set.next(cell)) {
+ *     int x = PackedCoordinate.getX(cell);
+ *     int y = PackedCoordinate.getY(cell);
+ * }
+ * </pre>
+ */
+public class CellSet {
+
+    /**
+     * One word per row, with bit x set when the block in column x is in the set
+     */
+    private final long[] rows;
+
+    /**
+     * Create a new empty set
+     * @param rows number of rows on the board
+     */
+    public CellSet(int rows) {
+        this.rows = new long[rows];
+    }
+
+    /**
+     * Create a new set holding a copy of the given rows
+     * @param rows one word per row, with bit x set when the block in column x is in the set
+     */
+    public CellSet(long[] rows) {
+        this.rows = rows.clone();
+    }
+
+    /**
+     * Add a block to the set
+     * @param x column
+     * @param y row
+     */
+    public void add(int x, int y) {
+        rows[y] |= 1L << x;
+    }
+
+    /**
+     * Remove a block from the set
+     * @param x column
+     * @param y row
+     */
+    public void remove(int x, int y) {
+        rows[y] &= ~(1L << x);
+    }
+
+    /**
+     * Get whether a block is in the set
+     * @param x column
+     * @param y row
+     * @return whether the block is in the set
+     */
+    public boolean contains(int x, int y) {
+        if (y < 0 || y >= rows.length || x < 0 || x >= Long.SIZE) return false;
+        return (rows[y] & (1L << x)) != 0;
+    }
+
+    /**
+     * Remove every block from the set
+     */
+    public void clear() {
+        Arrays.fill(rows, 0);
+    }
+
+    /**
+     * Get the number of blocks in the set
+     * @return the number of blocks
+     */
+    public int size() {
+        int size = 0;
+        for (long row : rows) {
+            size += Long.bitCount(row);
+        }
+        return size;
+    }
+
+    /**
+     * Get whether the set has no blocks in it
+     * @return whether the set is empty
+     */
+    public boolean isEmpty() {
+        for (long row : rows) {
+            if (row != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the blocks of one row in the set
+     * @param y row
+     * @return the row, with bit x set when the block in column x is in the set
+     */
+    public long getRow(int y) {
+        return rows[y];
+    }
+
+    /**
+     * Get the first block in the set, going along each row from the top
+     * @return the packed coordinate of the block, or PackedCoordinate.NONE if the set is empty
+     */
+    public int first() {
+        return find(0, 0);
+    }
+
+    /**
+     * Get the block after the given one in the set
+     * @param coordinate the packed coordinate of the current block
+     * @return the packed coordinate of the next block, or PackedCoordinate.NONE if there are no more
+     */
+    public int next(int coordinate) {
+        int x = PackedCoordinate.getX(coordinate) + 1;
+        int y = PackedCoordinate.getY(coordinate);
+        if (x == Long.SIZE) return find(y + 1, 0);
+        return find(y, x);
+    }
+
+    /**
+     * Find the first block in the set at or after a position
+     * @param y row to start from
+     * @param x column to start from in that row
+     * @return the packed coordinate of the block, or PackedCoordinate.NONE if there are none
+     */
+    private int find(int y, int x) {
+        if (y >= rows.length) return PackedCoordinate.NONE;
+
+        // Only look at the columns from x onwards in the first row
+        long remaining = rows[y] & (-1L << x);
+        while (remaining == 0) {
+            if (++y == rows.length) return PackedCoordinate.NONE;
+            remaining = rows[y];
+        }
+
+        return PackedCoordinate.of(Long.numberOfTrailingZeros(remaining), y);
+    }
+
+    /**
+     * Return a string representation of the set
+     * @return string representation
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CellSet [");
+        for (int cell = first(); cell != PackedCoordinate.NONE; cell = next(cell)) {
+            if (sb.length() > 9) sb.append(", ");
+            sb.append(PackedCoordinate.toString(cell));
+        }
+        return sb.append("]").toString();
+    }
+}
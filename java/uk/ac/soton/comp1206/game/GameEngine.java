@@ -0,0 +1,834 @@
+package uk.ac.soton.comp1206.game;
+
+import java.nio.ByteBuffer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.*;
+
+/**
+ * The GameEngine holds the rules and state of a TetrECS game: the grid, the piece queue, the score, level, lives and
+ * multiplier, and the game loop timer.
+ * <p>
+ * It does not depend on JavaFX and does not start any threads, so it can be run headless. Time only passes when
+ * {@link #tick(long)} is called, which lets simulations run games far faster than real time. The Game class extends
+ * this to drive it from a real timer and to expose its state as JavaFX properties.
+ */
+public class GameEngine {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(GameEngine.class);
+
+    /**
+     * The number of lives a player starts with
+     */
+    public static final int STARTING_LIVES = 3;
+
+    /**
+     * Number of rows
+     */
+    protected final int rows;
+
+    /**
+     * Number of columns
+     */
+    protected final int cols;
+
+    /**
+     * The grid model linked to the game
+     */
+    protected final Grid grid;
+
+    /**
+     * The generator that supplies the pieces for this game
+     */
+    private PieceGenerator pieceGenerator;
+
+    /**
+     * The current piece
+     */
+    protected GamePiece currentPiece;
+
+    /**
+     * The next piece
+     */
+    protected GamePiece followingPiece;
+
+    /**
+     * The score
+     */
+    private int score = 0;
+
+    /**
+     * The level
+     */
+    private int level = 0;
+
+    /**
+     * The lives the player has left in the game
+     */
+    private int lives = STARTING_LIVES;
+
+    /**
+     * The score multiplier
+     */
+    private int multiplier = 1;
+
+    /**
+     * The number of pieces played this game
+     */
+    private int piecesPlayed = 0;
+
+    /**
+     * The number of lines cleared this game
+     */
+    private int linesCleared = 0;
+
+    /**
+     * The time in milliseconds since the game loop timer was last reset
+     */
+    private long timerElapsed = 0;
+
+    /**
+     * The time in milliseconds the game has been running, counting only the time passed to tick
+     */
+    private long gameTime = 0;
+
+    /**
+     * Whether the game has ended
+     */
+    private boolean gameOver = false;
+
+    /**
+     * The next piece listener for the ui GameBoards
+     */
+    protected NextPieceListener nextPieceListener;
+
+    /**
+     * The rotate piece listener for the ui GameBoards
+     */
+    private RotatePieceListener rotatePieceListener;
+
+    /**
+     * The game loop listener for the ui timer
+     */
+    private GameLoopListener gameLoopListener;
+
+    /**
+     * The line cleared listener for the ui game board
+     */
+    private LineClearedListener lineClearedListener;
+
+    /**
+     * A listener for playing audio in the scene
+     */
+    private PlayAudioListener playAudioListener;
+
+    /**
+     * The bus the game publishes its events on, for anything that needs more than one listener
+     */
+    private final GameEventBus events = new GameEventBus();
+
+    /**
+     * The recorder told about every action, or null if the game is not recorded
+     */
+    private ReplayRecorder replayRecorder;
+
+    /**
+     * The history of states used to undo and redo moves, or null if moves cannot be undone
+     */
+    private GameHistory history;
+
+    /**
+     * Create a new game engine with the specified rows and columns, using randomly generated pieces. Creates a
+     * corresponding grid model.
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public GameEngine(int cols, int rows) {
+        this(cols, rows, new RandomPieceGenerator());
+    }
+
+    /**
+     * Create a new game engine with the specified rows and columns, taking its pieces from the given generator.
+     * Creates a corresponding grid model.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param pieceGenerator the generator that supplies the pieces
+     */
+    public GameEngine(int cols, int rows, PieceGenerator pieceGenerator) {
+        this.cols = cols;
+        this.rows = rows;
+        this.pieceGenerator = pieceGenerator;
+
+        // Create a new grid model to represent the game state
+        this.grid = new Grid(cols, rows);
+    }
+
+    /**
+     * Start the game
+     */
+    public void start() {
+        logger.debug("Starting game");
+        initialiseGame();
+    }
+
+    /**
+     * Initialise a new game and set up anything that needs to be done at the start
+     */
+    public void initialiseGame() {
+        logger.debug("Initialising game");
+
+        this.setScore(0);
+        this.setLevel(0);
+        this.setLives(STARTING_LIVES);
+        this.setMultiplier(1);
+        this.piecesPlayed = 0;
+        this.linesCleared = 0;
+        this.gameOver = false;
+        this.gameTime = 0;
+        this.grid.clearGrid();
+
+        // The recorder keeps the state of the generator before the first pieces are drawn from it
+        if (this.replayRecorder != null) this.replayRecorder.start(this);
+
+        this.currentPiece = this.spawnPiece();
+        this.followingPiece = this.spawnPiece();
+        if (this.nextPieceListener != null) this.nextPieceListener.nextPiece(this.currentPiece, this.followingPiece);
+        this.publishNextPiece();
+
+        this.resetTimer();
+
+        if (this.history != null) {
+            this.history.clear();
+            this.history.record(this);
+        }
+    }
+
+    /**
+     * Advances the game loop timer by the given amount of time, running the game loop each time it runs out
+     * @param elapsedMillis the time that has passed in milliseconds
+     */
+    public void tick(long elapsedMillis) {
+        this.timerElapsed += elapsedMillis;
+        this.gameTime += elapsedMillis;
+
+        while (!this.gameOver && this.timerElapsed >= this.getTimerDelay()) {
+            this.timerElapsed -= this.getTimerDelay();
+            this.gameLoop();
+        }
+    }
+
+    /**
+     * Handles what happens when the game loop timer goes to zero
+     */
+    protected void gameLoop() {
+        logger.debug("Game Loop!");
+        this.recordAction(Replay.Action.TIMEOUT, 0, 0);
+        this.loseLife();
+
+        // End game if all lives are gone
+        if (this.lives < 0) {
+            this.endGame();
+        }
+
+        else {
+            this.nextPiece();
+            this.setMultiplier(1);
+            this.resetTimer();
+            this.recordHistory();
+        }
+    }
+
+    /**
+     * Resets the game loop timer
+     */
+    protected void resetTimer() {
+        this.timerElapsed = 0;
+
+        // Notify listener
+        if (this.gameLoopListener != null)
+            gameLoopListener.onGameLoop();
+    }
+
+    /**
+     * Ends the game
+     * Its protected so it can be overridden
+     */
+    protected void endGame() {
+        this.gameOver = true;
+
+        if (this.events.hasSubscribers(GameOverEvent.class)) {
+            this.events.publish(new GameOverEvent(this, this.score, this.level, this.piecesPlayed));
+        }
+    }
+
+    /**
+     * Handle what should happen when a particular block is clicked
+     * @param x the column of the block that was clicked
+     * @param y the row of the block that was clicked
+     * @return whether the current piece was played
+     */
+    public boolean blockClicked(int x, int y) {
+        // Play piece if possible
+        if (grid.playPiece(this.getCurrentPiece(), x, y)) {
+            if (this.events.hasSubscribers(PiecePlacedEvent.class)) {
+                this.events.publish(new PiecePlacedEvent(this, this.currentPiece, x, y));
+            }
+            this.recordAction(Replay.Action.PLACE, x, y);
+            this.handlePlayPiece();
+            this.recordHistory();
+            return true;
+        }
+
+        if (this.playAudioListener != null) {
+            this.playAudioListener.playAudio("fail.wav");
+        }
+        return false;
+    }
+
+    /**
+     * Handle what should happen when a piece was successfully played.
+     * This is in a separate method so it can be overridden
+     */
+    protected void handlePlayPiece() {
+        if (this.playAudioListener != null) this.playAudioListener.playAudio("place.wav");
+        this.piecesPlayed++;
+        this.nextPiece();
+        this.resetTimer();
+        this.afterPiecePlayed();
+    }
+
+    /**
+     * Calculates whether line/s should be cleared, and the resulting score and multiplier after
+     */
+    private void afterPiecePlayed() {
+        // The grid only checks the lines the piece touched
+        int numOfLinesCleared = grid.clearLines();
+
+        // Update score, level and call line cleared listener
+        if (numOfLinesCleared >= 1) {
+            this.linesCleared += numOfLinesCleared;
+            this.calculateNewScore(numOfLinesCleared, grid.getClearedCount());
+            this.calculateNewLevel();
+            if (lineClearedListener != null) lineClearedListener.onLineCleared(new CellSet(grid.getClearedCells()));
+            if (this.events.hasSubscribers(LinesClearedEvent.class)) {
+                this.events.publish(new LinesClearedEvent(this, numOfLinesCleared, grid.getClearedCount(),
+                        grid.getClearedCells(), this.score));
+            }
+        }
+
+        // Update multiplier
+        this.calculateNewMultiplier(numOfLinesCleared >= 1);
+    }
+
+    /**
+     * Calculates the new score after a line is cleared
+     * @param numOfLines the number of lines cleared
+     * @param numOfBlocks the number of blocks cleared
+     */
+    protected void calculateNewScore(int numOfLines, int numOfBlocks) {
+        int addedScore = getScoreFor(numOfLines, numOfBlocks, this.multiplier);
+        this.setScore(this.score + addedScore);
+    }
+
+    /**
+     * Calculates the new multiplier after a game piece is played
+     * @param increase whether to increase the multiplier
+     */
+    protected void calculateNewMultiplier(boolean increase) {
+        this.setMultiplier(getNextMultiplier(this.multiplier, increase));
+    }
+
+    /**
+     * Calculates the level after a game piece is played
+     */
+    protected void calculateNewLevel() {
+        int oldLevel = this.level;
+        this.setLevel(getLevelFor(this.score));
+        if (oldLevel < this.level && this.playAudioListener != null) {
+            this.playAudioListener.playAudio("level.wav");
+        }
+    }
+
+    /**
+     * Gets the score added by clearing lines. Search and simulation code uses this so it follows the same rules.
+     * @param numOfLines the number of lines cleared
+     * @param numOfBlocks the number of blocks cleared
+     * @param multiplier the current multiplier
+     * @return the score to add
+     */
+    public static int getScoreFor(int numOfLines, int numOfBlocks, int multiplier) {
+        return numOfLines * numOfBlocks * 10 * multiplier;
+    }
+
+    /**
+     * Gets the multiplier after a game piece is played
+     * @param multiplier the current multiplier
+     * @param increase whether any lines were cleared
+     * @return the new multiplier
+     */
+    public static int getNextMultiplier(int multiplier, boolean increase) {
+        return increase ? multiplier + 1 : 1;
+    }
+
+    /**
+     * Gets the level for a given score
+     * @param score the score
+     * @return the level
+     */
+    public static int getLevelFor(int score) {
+        return ((score / 1000) * 1000) / 1000;
+    }
+
+    /**
+     * Returns a new game piece object from the piece generator
+     * @return new game piece
+     */
+    private GamePiece spawnPiece() {
+        return this.pieceGenerator.nextPieceType().createPiece();
+    }
+
+    /**
+     * Changes the current piece and following piece variables to the next piece
+     */
+    protected void nextPiece() {
+        this.currentPiece = this.followingPiece;
+        this.followingPiece = this.spawnPiece();
+
+        if (this.nextPieceListener != null) this.nextPieceListener.nextPiece(this.currentPiece, this.followingPiece);
+        this.publishNextPiece();
+    }
+
+    /**
+     * Publishes the current and following pieces on the event bus
+     */
+    private void publishNextPiece() {
+        if (this.events.hasSubscribers(NextPieceEvent.class)) {
+            this.events.publish(new NextPieceEvent(this, this.currentPiece, this.followingPiece));
+        }
+    }
+
+    /**
+     * Rotates the current piece
+     */
+    public void rotateCurrentPiece() {
+        this.rotateCurrentPiece(1);
+    }
+
+    /**
+     * Performs the given number of rotations on the current piece
+     * @param rotations number of rotations to complete
+     */
+    public void rotateCurrentPiece(int rotations) {
+        this.getCurrentPiece().rotate(rotations);
+        this.recordAction(Replay.Action.ROTATE, 0, 0);
+        if (this.rotatePieceListener != null) {
+            rotatePieceListener.rotatePiece(this.currentPiece);
+        }
+        this.recordHistory();
+    }
+
+    /**
+     * Swaps the current piece with the following piece
+     */
+    public void swapCurrentPiece() {
+        this.recordAction(Replay.Action.SWAP, 0, 0);
+        GamePiece tempPiece = this.currentPiece;
+        this.currentPiece = this.followingPiece;
+        this.followingPiece = tempPiece;
+
+        if (this.nextPieceListener != null) this.nextPieceListener.nextPiece(this.currentPiece, this.followingPiece);
+        this.publishNextPiece();
+        this.recordHistory();
+    }
+
+    /**
+     * Decrements the lives by one
+     * Protected method so it can be overridden
+     */
+    protected void loseLife() {
+        this.setLives(this.lives - 1);
+        if (this.playAudioListener != null) this.playAudioListener.playAudio("lifelose.wav");
+
+        if (this.events.hasSubscribers(LifeLostEvent.class)) {
+            this.events.publish(new LifeLostEvent(this, this.lives));
+        }
+    }
+
+    /**
+     * A public method for accessing the game's nextPiece method
+     */
+    public void dropCurrentPiece() {
+        this.recordAction(Replay.Action.DROP, 0, 0);
+        this.nextPiece();
+        this.recordHistory();
+    }
+
+    /**
+     * Tells the replay recorder about an action, with the current piece as it is now
+     * @param action the action
+     * @param x the column of the centre of the piece, for placements
+     * @param y the row of the centre of the piece, for placements
+     */
+    private void recordAction(Replay.Action action, int x, int y) {
+        if (this.replayRecorder != null) this.replayRecorder.record(action, this.currentPiece, x, y, getGameTime());
+    }
+
+    /**
+     * Adds the state after an action to the history, if moves can be undone
+     */
+    private void recordHistory() {
+        if (this.history != null) this.history.record(this);
+    }
+
+    /**
+     * Sets the history used to undo and redo moves. Takes effect from the next time the game is initialised.
+     * @param history the history, or null to stop moves being undone
+     */
+    public void setHistory(GameHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Undoes the last move, putting the game back into the state before it
+     * @return whether there was a move to undo
+     */
+    public boolean undo() {
+        return this.history != null && !this.gameOver && this.history.undo(this);
+    }
+
+    /**
+     * Redoes the last move that was undone
+     * @return whether there was a move to redo
+     */
+    public boolean redo() {
+        return this.history != null && !this.gameOver && this.history.redo(this);
+    }
+
+    /**
+     * Sets the recorder told about every action. Takes effect from the next time the game is initialised.
+     * @param recorder the recorder, or null to stop recording
+     */
+    public void setReplayRecorder(ReplayRecorder recorder) {
+        this.replayRecorder = recorder;
+    }
+
+    /**
+     * Get the replay of this game so far
+     * @return the replay, or null if the game is not being recorded
+     */
+    public Replay getReplay() {
+        return this.replayRecorder == null ? null : this.replayRecorder.getReplay(this.score);
+    }
+
+    /**
+     * Get the time the game has been running, which for a headless game is the total time passed to tick
+     * @return the time in milliseconds
+     */
+    public long getGameTime() {
+        return this.gameTime;
+    }
+
+    /**
+     * Get the generator that supplies the pieces for this game
+     * @return the piece generator
+     */
+    public PieceGenerator getPieceGenerator() {
+        return this.pieceGenerator;
+    }
+
+    /**
+     * Sets the generator that supplies the pieces for this game. Takes effect from the next piece spawned.
+     * @param pieceGenerator the piece generator
+     */
+    public void setPieceGenerator(PieceGenerator pieceGenerator) {
+        this.pieceGenerator = pieceGenerator;
+    }
+
+    /**
+     * Sets the given NextPieceListener
+     * @param listener the NextPieceListener instance
+     */
+    public void setNextPieceListener(NextPieceListener listener) {
+        this.nextPieceListener = listener;
+    }
+
+    /**
+     * Sets the given RotatePieceListener
+     * @param listener the RotatePieceListener instance
+     */
+    public void setRotatePieceListener(RotatePieceListener listener) {
+        this.rotatePieceListener = listener;
+    }
+
+    /**
+     * Sets the given GameLoopListener
+     * @param listener the GameLoopListener instance
+     */
+    public void setGameLoopListener(GameLoopListener listener) {
+        this.gameLoopListener = listener;
+    }
+
+    /**
+     * Sets the given LineClearedListener
+     * @param listener the LineClearedListener instance
+     */
+    public void setLineClearedListener(LineClearedListener listener) {
+        this.lineClearedListener = listener;
+    }
+
+    /**
+     * Sets the given PlayAudioListener
+     * @param listener the PlayAudioListener instance
+     */
+    public void setPlayAudioListener(PlayAudioListener listener) {
+        this.playAudioListener = listener;
+    }
+
+    /**
+     * Write the state of the game into a buffer. GameSnapshot uses this to save games.
+     * @param buffer the buffer
+     */
+    void writeState(ByteBuffer buffer) {
+        this.grid.writeState(buffer);
+
+        // Each piece takes one byte, its type in the top bits and its rotation in the bottom two
+        buffer.put((byte) (this.currentPiece.getType().ordinal() << 2 | this.currentPiece.getRotation()));
+        buffer.put((byte) (this.followingPiece.getType().ordinal() << 2 | this.followingPiece.getRotation()));
+
+        GameSnapshot.putVarInt(buffer, this.score);
+        GameSnapshot.putVarInt(buffer, this.level);
+        GameSnapshot.putVarInt(buffer, this.lives);
+        GameSnapshot.putVarInt(buffer, this.multiplier);
+        GameSnapshot.putVarInt(buffer, this.piecesPlayed);
+        GameSnapshot.putVarInt(buffer, this.linesCleared);
+        GameSnapshot.putVarLong(buffer, this.getTimerRemaining());
+
+        // The random generator can be carried on from where it was, other generators are left as they are
+        boolean seeded = this.pieceGenerator instanceof RandomPieceGenerator;
+        buffer.put((byte) ((this.gameOver ? 1 : 0) | (seeded ? 2 : 0)));
+        if (seeded) {
+            RandomPieceGenerator random = (RandomPieceGenerator) this.pieceGenerator;
+            buffer.putLong(random.getSeed());
+            buffer.putLong(random.getState());
+        }
+    }
+
+    /**
+     * Replace the state of the game with one written by writeState. GameSnapshot uses this to restore games.
+     * @param buffer the buffer
+     */
+    void readState(ByteBuffer buffer) {
+        this.grid.readState(buffer);
+
+        int current = buffer.get() & 0xFF;
+        int following = buffer.get() & 0xFF;
+        int score = GameSnapshot.getVarInt(buffer);
+        int level = GameSnapshot.getVarInt(buffer);
+        int lives = GameSnapshot.getVarInt(buffer);
+        int multiplier = GameSnapshot.getVarInt(buffer);
+        int piecesPlayed = GameSnapshot.getVarInt(buffer);
+        int linesCleared = GameSnapshot.getVarInt(buffer);
+        long timerRemaining = GameSnapshot.getVarLong(buffer);
+        int flags = buffer.get();
+
+        if ((flags & 2) != 0) {
+            long seed = buffer.getLong();
+            long state = buffer.getLong();
+
+            // Keep the existing generator if it is the same sequence, so anything holding it sees the change
+            if (!(this.pieceGenerator instanceof RandomPieceGenerator)
+                    || ((RandomPieceGenerator) this.pieceGenerator).getSeed() != seed) {
+                this.pieceGenerator = new RandomPieceGenerator(seed);
+            }
+            ((RandomPieceGenerator) this.pieceGenerator).setState(state);
+        }
+
+        this.setScore(score);
+        this.setLevel(level);
+        this.setLives(lives);
+        this.setMultiplier(multiplier);
+        this.piecesPlayed = piecesPlayed;
+        this.linesCleared = linesCleared;
+        this.gameOver = (flags & 1) != 0;
+
+        this.currentPiece = GamePiece.createPiece(current >>> 2, current & 3);
+        this.followingPiece = GamePiece.createPiece(following >>> 2, following & 3);
+        if (this.nextPieceListener != null) this.nextPieceListener.nextPiece(this.currentPiece, this.followingPiece);
+        this.publishNextPiece();
+
+        this.restoreTimer(timerRemaining);
+    }
+
+    /**
+     * Sets the game loop timer to run out after the given time, as when a game is restored
+     * Protected method so it can be overridden
+     * @param remaining the time left in milliseconds
+     */
+    protected void restoreTimer(long remaining) {
+        this.timerElapsed = Math.max(0, this.getTimerDelay() - remaining);
+
+        // Notify listener
+        if (this.gameLoopListener != null)
+            gameLoopListener.onGameLoop();
+    }
+
+    /**
+     * Get the bus the game publishes its events on
+     * @return the event bus
+     */
+    public GameEventBus getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Calculates the timer delay based on the current level of the game
+     * @return the timer delay in milliseconds
+     */
+    public long getTimerDelay() {
+        return Math.max(2500, 12000 - 500 * this.level);
+    }
+
+    /**
+     * Get the time left before the game loop timer runs out
+     * @return the remaining time in milliseconds
+     */
+    public long getTimerRemaining() {
+        return Math.max(0, this.getTimerDelay() - this.timerElapsed);
+    }
+
+    /**
+     * Get the grid model inside this game representing the game state of the board
+     * @return game grid model
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the number of columns in this game
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in this game
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the current game piece
+     * @return the current game piece
+     */
+    public GamePiece getCurrentPiece() {
+        return this.currentPiece;
+    }
+
+    /**
+     * Get the following game piece
+     * @return the following game piece
+     */
+    public GamePiece getFollowingPiece() {
+        return this.followingPiece;
+    }
+
+    /**
+     * Get whether the game has ended
+     * @return whether the game has ended
+     */
+    public boolean isGameOver() {
+        return this.gameOver;
+    }
+
+    /**
+     * Get the number of pieces played this game
+     * @return the number of pieces played
+     */
+    public int getPiecesPlayed() {
+        return this.piecesPlayed;
+    }
+
+    /**
+     * Get the number of lines cleared this game
+     * @return the number of lines cleared
+     */
+    public int getLinesCleared() {
+        return this.linesCleared;
+    }
+
+    /**
+     * Get the score
+     * @return the score
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Set the score
+     * Protected method so it can be overridden
+     * @param score the new score
+     */
+    protected void setScore(int score) {
+        this.score = score;
+    }
+
+    /**
+     * Get the level
+     * @return the level
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Set the level
+     * Protected method so it can be overridden
+     * @param level the new level
+     */
+    protected void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the lives the player has left
+     * @return the lives
+     */
+    public int getLives() {
+        return this.lives;
+    }
+
+    /**
+     * Set the lives the player has left
+     * Protected method so it can be overridden
+     * @param lives the new lives
+     */
+    protected void setLives(int lives) {
+        this.lives = lives;
+    }
+
+    /**
+     * Get the score multiplier
+     * @return the multiplier
+     */
+    public int getMultiplier() {
+        return this.multiplier;
+    }
+
+    /**
+     * Set the score multiplier
+     * Protected method so it can be overridden
+     * @param multiplier the new multiplier
+     */
+    protected void setMultiplier(int multiplier) {
+        this.multiplier = multiplier;
+    }
+}
@@ -0,0 +1,148 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Keeps every state of a game so moves can be undone and redone without limit.
+ * <p>
+ * Each state is a GameSnapshot, with the grid packed one bit per block, written end to end into a single byte array
+ * with an array of offsets alongside it. A state costs a few dozen bytes on a 5x5 board and no objects. Undoing or
+ * redoing restores the snapshot into the engine, which updates the grid in one batch so a linked GameBoard only
+ * repaints the blocks that changed.
+ */
+public class GameHistory {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(GameHistory.class);
+
+    /**
+     * The snapshots, end to end
+     */
+    private byte[] data = new byte[4096];
+
+    /**
+     * A buffer over the snapshots, replaced when the array grows
+     */
+    private ByteBuffer buffer = ByteBuffer.wrap(data);
+
+    /**
+     * The offset of each snapshot, with one more entry for the end of the last one
+     */
+    private int[] offsets = new int[256];
+
+    /**
+     * The number of states held
+     */
+    private int count;
+
+    /**
+     * The index of the state the game is in
+     */
+    private int current = -1;
+
+    /**
+     * Forget every state
+     */
+    public void clear() {
+        count = 0;
+        current = -1;
+    }
+
+    /**
+     * Add the state the game is in now, after the current state. Any states that were undone are forgotten.
+     * @param engine the game
+     */
+    public void record(GameEngine engine) {
+        count = current + 1;
+        int start = offsets[count];
+
+        // Grow the arrays so the largest possible snapshot will fit
+        int needed = start + GameSnapshot.maxSize(engine.getCols(), engine.getRows());
+        if (needed > data.length) {
+            data = Arrays.copyOf(data, Math.max(needed, data.length * 2));
+            buffer = ByteBuffer.wrap(data);
+        }
+        if (count + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+
+        buffer.clear().position(start);
+        GameSnapshot.write(engine, buffer);
+
+        offsets[count + 1] = buffer.position();
+        current = count++;
+    }
+
+    /**
+     * Put the game back into the state before the current one
+     * @param engine the game
+     * @return whether there was a state to go back to
+     */
+    public boolean undo(GameEngine engine) {
+        if (!canUndo()) return false;
+
+        restore(engine, --current);
+        return true;
+    }
+
+    /**
+     * Put the game back into the state after the current one, after an undo
+     * @param engine the game
+     * @return whether there was a state to go forward to
+     */
+    public boolean redo(GameEngine engine) {
+        if (!canRedo()) return false;
+
+        restore(engine, ++current);
+        return true;
+    }
+
+    /**
+     * Restore a state into the game
+     * @param engine the game
+     * @param state the index of the state
+     */
+    private void restore(GameEngine engine, int state) {
+        logger.debug("Restoring state {} of {}", state, count);
+        buffer.clear().position(offsets[state]).limit(offsets[state + 1]);
+        GameSnapshot.restore(engine, buffer);
+    }
+
+    /**
+     * Get whether there is a state to undo to
+     * @return whether undo would do anything
+     */
+    public boolean canUndo() {
+        return current > 0;
+    }
+
+    /**
+     * Get whether there is a state to redo to
+     * @return whether redo would do anything
+     */
+    public boolean canRedo() {
+        return current + 1 < count;
+    }
+
+    /**
+     * Get the number of states held
+     * @return the number of states
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the number of bytes used by the states held
+     * @return the size in bytes
+     */
+    public int getBytes() {
+        return count == 0 ? 0 : offsets[count];
+    }
+}
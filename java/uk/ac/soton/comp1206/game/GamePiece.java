@@ -6,6 +6,9 @@ import org.apache.logging.log4j.Logger;
 /**
  * Instances of GamePiece Represents the model of a specific Game Piece with it's block makeup.
  * <p>
+ * Every orientation of every piece type is worked out once when the GamePieceType enum is loaded, so a GamePiece is
+ * just a type and a rotation index into that table. Rotating a piece never allocates.
+ * <p>
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by it's
  * number.
  */
@@ -22,19 +25,24 @@ public class GamePiece {
     public static final int PIECES = 15;
 
     /**
-     * The 2D grid representation of the shape of this piece
+     * The width and height of the grid every piece is drawn in
+     */
+    public static final int SIZE = 3;
+
+    /**
+     * The number of rotations before a piece returns to its starting orientation
      */
-    private int[][] blocks;
+    public static final int ROTATIONS = 4;
 
     /**
-     * The value of this piece
+     * The type of this piece
      */
-    private final int value;
+    private final GamePieceType type;
 
     /**
-     * The name of this piece
+     * The index of the current orientation of this piece, between 0 and 3
      */
-    private final String name;
+    private int rotation;
 
     /**
      * Enum for better storage of all the game piece types
@@ -116,9 +124,19 @@ public class GamePiece {
         DOUBLE(new int[][]{{0, 1, 0}, {0, 1, 0}, {0, 0, 0}}, "Double", 15);
 
         /**
-         * The 2d array this game piece represents
+         * A cached copy of the values of this enum, so looking up a type does not clone the values array
+         */
+        private static final GamePieceType[] VALUES = values();
+
+        /**
+         * The shape mask of each of the four orientations of this game piece, indexed by rotation
+         */
+        private final int[] orientations = new int[ROTATIONS];
+
+        /**
+         * The number of distinct orientations of this game piece, either 1, 2 or 4
          */
-        private final int[][] blocks;
+        private final int distinctOrientations;
 
         /**
          * The name of the game piece
@@ -137,9 +155,21 @@ public class GamePiece {
          * @param value the value (colour) that represents the game piece
          */
         GamePieceType(int[][] blocks, String name, int value) {
-            this.blocks = blocks;
             this.name = name;
             this.value = value;
+
+            // Work out every orientation up front
+            orientations[0] = shapeOf(blocks);
+            for (int i = 1; i < ROTATIONS; i++) {
+                orientations[i] = rotateShape(orientations[i - 1]);
+            }
+
+            // Symmetric pieces repeat their starting orientation after one or two rotations
+            int distinct = 1;
+            while (distinct < ROTATIONS && orientations[distinct] != orientations[0]) {
+                distinct++;
+            }
+            this.distinctOrientations = distinct;
         }
 
         /**
@@ -147,7 +177,45 @@ public class GamePiece {
          * @return the new object
          */
         public GamePiece createPiece() {
-            return new GamePiece(name, blocks, value);
+            return new GamePiece(this, 0);
+        }
+
+        /**
+         * Get the shape mask of this game piece in the given orientation
+         * @param rotation the rotation index, between 0 and 3
+         * @return the shape mask, with bit {@code y * 3 + x} set for every filled block
+         */
+        public int getOrientation(int rotation) {
+            return orientations[rotation];
+        }
+
+        /**
+         * Get the number of distinct orientations of this game piece. Rotation indexes below this number give every
+         * distinct shape exactly once, so search code only needs to try those.
+         * @return the number of distinct orientations, either 1, 2 or 4
+         */
+        public int getDistinctOrientations() {
+            return distinctOrientations;
+        }
+
+        /**
+         * Get the value (colour) of this game piece
+         * @return the value of the game piece
+         */
+        public int getValue() {
+            return value;
+        }
+
+        /**
+         * Get the game piece type with the given index
+         * @param index the index of the game piece type, between 0 and 14
+         * @return the game piece type
+         */
+        public static GamePieceType fromIndex(int index) {
+            if (index < 0 || index >= VALUES.length)
+                throw new IndexOutOfBoundsException("No such piece: " + index);
+
+            return VALUES[index];
         }
 
         /**
@@ -156,10 +224,9 @@ public class GamePiece {
          * @return the new object
          */
         public static GamePiece createGamePiece(int pieceNumber) {
-            for (GamePieceType gamePieceType : GamePieceType.values()) {
-                if (gamePieceType.value == pieceNumber) {
-                    return gamePieceType.createPiece();
-                }
+            // The value of each piece is its index plus one
+            if (pieceNumber >= 1 && pieceNumber <= VALUES.length) {
+                return VALUES[pieceNumber - 1].createPiece();
             }
 
             logger.error("Invalid game piece type: {}", pieceNumber);
@@ -173,10 +240,7 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece) {
-        if (piece < 0 || piece >= GamePieceType.values().length)
-            throw new IndexOutOfBoundsException("No such piece: " + piece);
-
-        return GamePieceType.values()[piece].createPiece();
+        return GamePieceType.fromIndex(piece).createPiece();
     }
 
     /**
@@ -186,31 +250,49 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
+        return new GamePiece(GamePieceType.fromIndex(piece), rotation & (ROTATIONS - 1));
+    }
+
+    /**
+     * Create a new GamePiece of the given type and rotation. Should not be called directly, only via the factory.
+     * @param type the type of the piece
+     * @param rotation the rotation index, between 0 and 3
+     */
+    private GamePiece(GamePieceType type, int rotation) {
+        this.type = type;
+        this.rotation = rotation;
+    }
+
+    /**
+     * Packs a 3x3 block grid into a shape mask
+     * @param blocks the block grid to pack
+     * @return the shape mask, with bit {@code y * 3 + x} set for every filled block
+     */
+    private static int shapeOf(int[][] blocks) {
+        int shape = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if (blocks[x][y] != 0) shape |= 1 << (y * SIZE + x);
+            }
+        }
 
-        newPiece.rotate(rotation);
-        return newPiece;
+        return shape;
     }
 
     /**
-     * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only via the
-     * factory.
-     * @param name name of the piece
-     * @param blocks block makeup of the piece
-     * @param value the value of this piece
+     * Rotates a shape mask once clockwise around its centre block, so the block at (x, y) moves to (2 - y, x)
+     * @param shape the shape mask to rotate
+     * @return the rotated shape mask
      */
-    private GamePiece(String name, int[][] blocks, int value) {
-        this.name = name;
-        this.blocks = blocks;
-        this.value = value;
-
-        //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
-        for(int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if(blocks[x][y] == 0) continue;
-                blocks[x][y] = value;
+    private static int rotateShape(int shape) {
+        int rotated = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if ((shape & (1 << (y * SIZE + x))) != 0) rotated |= 1 << (x * SIZE + (SIZE - 1 - y));
             }
         }
+
+        return rotated;
     }
 
     /**
@@ -218,17 +300,49 @@ public class GamePiece {
      * @return piece value
      */
     public int getValue() {
-        return value;
+        return type.value;
+    }
+
+    /**
+     * Get the type of this piece
+     * @return piece type
+     */
+    public GamePieceType getType() {
+        return type;
     }
 
     /**
-     * Get the block makeup of this piece
+     * Get the index of the current orientation of this piece
+     * @return the rotation index, between 0 and 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the block makeup of this piece. A new array is built on every call, so this should not be used on any hot
+     * path, use {@link #getShape()} instead.
      * @return 2D grid of the blocks representing the piece shape
      */
     public int[][] getBlocks() {
+        int[][] blocks = new int[SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                blocks[x][y] = getValueAtCoordinate(x, y);
+            }
+        }
+
         return blocks;
     }
 
+    /**
+     * Get the shape of this piece as a packed bitmask
+     * @return the shape mask, with bit {@code y * 3 + x} set for every filled block
+     */
+    public int getShape() {
+        return type.orientations[rotation];
+    }
+
     /**
      * Get the value at a specific coordinate
      * @param x the x coordinate
@@ -236,37 +350,22 @@ public class GamePiece {
      * @return The value at the given coordinates
      */
     public int getValueAtCoordinate(int x, int y) {
-        return this.blocks[x][y];
+        return (getShape() & (1 << (y * SIZE + x))) != 0 ? type.value : 0;
     }
 
     /**
      * Rotate this piece the given number of rotations
-     * @param rotations number of rotations
+     * @param rotations number of rotations, which can be negative to rotate anticlockwise
      */
     public void rotate(int rotations) {
-        for(int rotated = 0; rotated < rotations; rotated ++) {
-            rotate();
-        }
+        rotation = (rotation + rotations) & (ROTATIONS - 1);
     }
 
     /**
-     * Rotate this piece exactly once by rotating it's 3x3 grid
+     * Rotate this piece exactly once
      */
     public void rotate() {
-        int[][] rotated = new int[blocks.length][blocks[0].length];
-        rotated[2][0] = blocks[0][0];
-        rotated[1][0] = blocks[0][1];
-        rotated[0][0] = blocks[0][2];
-
-        rotated[2][1] = blocks[1][0];
-        rotated[1][1] = blocks[1][1];
-        rotated[0][1] = blocks[1][2];
-
-        rotated[2][2] = blocks[2][0];
-        rotated[1][2] = blocks[2][1];
-        rotated[0][2] = blocks[2][2];
-
-        blocks = rotated;
+        rotate(1);
     }
 
     /**
@@ -274,7 +373,7 @@ public class GamePiece {
      * @return the name of this piece
      */
     public String toString() {
-        return this.name;
+        return type.name;
     }
 
     /**
@@ -0,0 +1,233 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and restores the whole state of a game in a compact binary form: the grid, the current and following pieces
+ * with their rotations, the score, level, lives and multiplier, the time left on the game loop timer and the state of
+ * the random piece generator.
+ * <p>
+ * Numbers are written as variable length integers and the grid as one bit per block followed by a four bit colour for
+ * each filled block, so a 5x5 game fits in a few dozen bytes. Writing a snapshot into a ByteBuffer does not allocate,
+ * so one can be taken after every move. Restoring a snapshot into another engine of the same size forks the game, so
+ * a simulation can carry on from a live position.
+ * <p>
+ * On a channel each snapshot is written with its length in front, so several can be written one after another.
+ */
+public final class GameSnapshot {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(GameSnapshot.class);
+
+    /**
+     * The version of the format, written at the start of every snapshot
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The most bytes the state of an engine other than its grid can take up
+     */
+    private static final int MAX_ENGINE_BYTES = 2 + 6 * 5 + 10 + 1 + 16;
+
+    /**
+     * This class only holds static helpers
+     */
+    private GameSnapshot() {
+    }
+
+    /**
+     * Get the most bytes a snapshot of a game of the given size can take up
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the maximum size in bytes
+     */
+    public static int maxSize(int cols, int rows) {
+        // The version, the grid size, the grid flags, one bit per block, then up to a byte of colour per block
+        int cells = cols * rows;
+        return 1 + 10 + 1 + (cells + 7) / 8 + cells + MAX_ENGINE_BYTES;
+    }
+
+    /**
+     * Take a snapshot of a game
+     * @param engine the game
+     * @return a buffer holding the snapshot, ready to be read
+     */
+    public static ByteBuffer capture(GameEngine engine) {
+        ByteBuffer buffer = ByteBuffer.allocate(maxSize(engine.getCols(), engine.getRows()));
+        write(engine, buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Write a snapshot of a game into a buffer, which must have at least maxSize bytes left
+     * @param engine the game
+     * @param buffer the buffer
+     */
+    public static void write(GameEngine engine, ByteBuffer buffer) {
+        buffer.put((byte) VERSION);
+        engine.writeState(buffer);
+    }
+
+    /**
+     * Restore a game from a snapshot in a buffer. The game must be the same size as the one the snapshot was taken
+     * from. A Game must be restored on the fx thread, as it updates the ui.
+     * @param engine the game to restore into
+     * @param buffer the buffer, positioned at the start of the snapshot
+     */
+    public static void restore(GameEngine engine, ByteBuffer buffer) {
+        int version = buffer.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+
+        engine.readState(buffer);
+    }
+
+    /**
+     * Write a snapshot of a game to a channel, with its length in front
+     * @param engine the game
+     * @param channel the channel
+     * @throws IOException if the channel cannot be written to
+     */
+    public static void save(GameEngine engine, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + maxSize(engine.getCols(), engine.getRows()));
+        buffer.position(Integer.BYTES);
+        write(engine, buffer);
+        buffer.putInt(0, buffer.position() - Integer.BYTES);
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Read a snapshot written by save from a channel and restore a game from it
+     * @param engine the game to restore into
+     * @param channel the channel
+     * @throws IOException if the channel cannot be read or does not hold a valid snapshot
+     */
+    public static void load(GameEngine engine, ReadableByteChannel channel) throws IOException {
+        ByteBuffer length = readFully(channel, ByteBuffer.allocate(Integer.BYTES));
+        int size = length.getInt(0);
+        if (size < 1 || size > maxSize(engine.getCols(), engine.getRows()))
+            throw new IOException("Invalid snapshot length: " + size);
+
+        ByteBuffer buffer = readFully(channel, ByteBuffer.allocate(size));
+        buffer.flip();
+
+        try {
+            restore(engine, buffer);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Invalid snapshot", e);
+        }
+    }
+
+    /**
+     * Save a snapshot of a game to a file. The snapshot is written to a temporary file first and moved into place, so
+     * a crash part way through leaves the previous snapshot intact.
+     * @param engine the game
+     * @param path the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(GameEngine engine, Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            save(engine, channel);
+            channel.force(false);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.debug("Saved snapshot to {}", path);
+    }
+
+    /**
+     * Restore a game from a snapshot file written by save
+     * @param engine the game to restore into
+     * @param path the file
+     * @throws IOException if the file cannot be read or does not hold a valid snapshot
+     */
+    public static void load(GameEngine engine, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            load(engine, channel);
+        }
+        logger.debug("Loaded snapshot from {}", path);
+    }
+
+    /**
+     * Fill a buffer from a channel
+     * @param channel the channel
+     * @param buffer the buffer
+     * @return the buffer
+     * @throws IOException if the channel ends before the buffer is full
+     */
+    private static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Snapshot ended early");
+        }
+        return buffer;
+    }
+
+    /**
+     * Write an int as a zigzag encoded variable length integer, so small values of either sign take one byte
+     * @param buffer the buffer
+     * @param value the value
+     */
+    static void putVarInt(ByteBuffer buffer, int value) {
+        putVarLong(buffer, value);
+    }
+
+    /**
+     * Read an int written by putVarInt
+     * @param buffer the buffer
+     * @return the value
+     */
+    static int getVarInt(ByteBuffer buffer) {
+        long value = getVarLong(buffer);
+        if (value != (int) value) throw new IllegalArgumentException("Value out of range: " + value);
+        return (int) value;
+    }
+
+    /**
+     * Write a long as a zigzag encoded variable length integer, seven bits to a byte
+     * @param buffer the buffer
+     * @param value the value
+     */
+    static void putVarLong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Read a long written by putVarLong
+     * @param buffer the buffer
+     * @return the value
+     */
+    static long getVarLong(ByteBuffer buffer) {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new IllegalArgumentException("Variable length integer too long");
+    }
+}
@@ -1,17 +1,33 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.event.GridChangedListener;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
  * arrow, with rows and columns.
  * <p>
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of
- * the grid.
+ * The state of the grid is held as an occupancy bitboard, with one long per row where bit x is set when column x is
+ * filled, alongside a colour plane holding the value of each block. Checking and placing a piece is done by shifting
+ * the rows of the piece's shape mask onto the bitboard, so the grid can hold at most 64 columns.
+ * <p>
+ * The grid also keeps a count of the filled blocks in every row and column, so finding the full lines after a piece
+ * is played only needs to look at the rows and columns that piece touched.
+ * <p>
+ * A Zobrist hash of the filled blocks is kept up to date as blocks are filled and emptied, so search code can tell
+ * when it has reached the same board through a different order of moves.
+ * <p>
+ * The Grid does not depend on JavaFX, so it can be used by the headless GameEngine. Anything displaying the grid can
+ * add a GridChangedListener, which is told which blocks changed value. Changes made between beginUpdate and endUpdate
+ * are collected into a single notification, and playing a piece, clearing lines and clearing the grid are each done as
+ * one update, so a display repaints once per move rather than once per block.
  * <p>
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  * <p>
@@ -24,6 +40,17 @@ public class Grid {
      */
     private static final Logger logger = LogManager.getLogger(Grid.class);
 
+    /**
+     * The maximum number of columns a grid can have, as each row is held in a single long
+     */
+    public static final int MAX_COLS = Long.SIZE;
+
+    /**
+     * The maximum number of rows a grid can have. Boards this size already need a block for every cell on screen, and
+     * keeping rows small means a packed coordinate never runs out of bits for the row.
+     */
+    public static final int MAX_ROWS = 64;
+
     /**
      * The number of columns in this grid
      */
@@ -35,9 +62,79 @@ public class Grid {
     private final int rows;
 
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties.
+     * The occupancy bitboard, one word per row with bit x set when the block in column x is filled
+     */
+    private final long[] occupancy;
+
+    /**
+     * The colour plane, holding the value of every block indexed by {@code y * cols + x}
+     */
+    private final byte[] colours;
+
+    /**
+     * The number of filled blocks in each row
+     */
+    private final int[] rowFill;
+
+    /**
+     * The number of filled blocks in each column
+     */
+    private final int[] colFill;
+
+    /**
+     * The blocks removed by the last call to clearLines, in the same one word per row layout as the bitboard
+     */
+    private final long[] clearedCells;
+
+    /**
+     * The number of blocks removed by the last call to clearLines
+     */
+    private int clearedCount;
+
+    /**
+     * The shape of the last piece played, or 0 once its lines have been checked
+     */
+    private int lastShape;
+
+    /**
+     * The column of the top left block of the last piece played
+     */
+    private int lastX;
+
+    /**
+     * The row of the top left block of the last piece played
+     */
+    private int lastY;
+
+    /**
+     * The Zobrist hash of the filled blocks
+     */
+    private long hash;
+
+    /**
+     * The listeners told when blocks change value
+     */
+    private final List<GridChangedListener> listeners = new ArrayList<>();
+
+    /**
+     * The blocks changed since the listeners were last told, in the same one word per row layout as the bitboard
+     */
+    private final long[] changedCells;
+
+    /**
+     * The first row with a changed block, or rows if there are none
+     */
+    private int changedTop;
+
+    /**
+     * The last row with a changed block, or -1 if there are none
      */
-    private final SimpleIntegerProperty[][] grid;
+    private int changedBottom = -1;
+
+    /**
+     * The number of updates that have begun and not ended yet
+     */
+    private int updateDepth;
 
     /**
      * Create a new Grid with the specified number of columns and rows and initialise them
@@ -45,54 +142,111 @@ public class Grid {
      * @param rows number of rows
      */
     public Grid(int cols, int rows) {
+        if (cols < 1 || cols > MAX_COLS || rows < 1 || rows > MAX_ROWS)
+            throw new IllegalArgumentException("Invalid grid size: " + cols + "x" + rows);
+
         this.cols = cols;
         this.rows = rows;
 
-        // Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        // Create the model
+        occupancy = new long[rows];
+        colours = new byte[cols * rows];
+        rowFill = new int[rows];
+        colFill = new int[cols];
+        clearedCells = new long[rows];
+        changedCells = new long[rows];
+        changedTop = rows;
+    }
 
-        // Add a SimpleIntegerProperty to every block in the grid
-        for(var y = 0; y < rows; y++) {
-            for(var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
-            }
+    /**
+     * Add a listener to be told when blocks change value, once per update
+     * @param listener the GridChangedListener instance
+     */
+    public void addListener(GridChangedListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener that was previously added
+     * @param listener the GridChangedListener instance
+     */
+    public void removeListener(GridChangedListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Start a batch of changes. The listeners are not told about any change until the matching call to endUpdate, and
+     * are then told about all of them at once. Updates can be nested, in which case only the outermost one notifies.
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * End a batch of changes, telling the listeners about every block that changed if this ends the outermost update
+     */
+    public void endUpdate() {
+        if (updateDepth == 0) throw new IllegalStateException("endUpdate called without beginUpdate");
+
+        if (--updateDepth == 0 && changedBottom >= 0) {
+            notifyListeners();
         }
     }
 
     /**
-     * Get the Integer property contained inside the grid at a given row and column index. Can be used for binding.
-     * @param x column
-     * @param y row
-     * @return the IntegerProperty at the given x and y in this grid
+     * Make a batch of changes as a single update
+     * @param changes the changes to make
      */
-    public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+    public void update(Runnable changes) {
+        beginUpdate();
+        try {
+            changes.run();
+        } finally {
+            endUpdate();
+        }
     }
 
     /**
      * Update the value at the given x and y index within the grid
      * @param x column
      * @param y row
-     * @param value the new value
+     * @param value the new value, from 0 to 255
+     * @throws IllegalArgumentException if the value does not fit in the colour plane
      */
     public void updateGridValue(int x, int y, int value) {
-        grid[x][y].set(value);
+        // Each block only has a byte for its value, so anything bigger would be stored as something else
+        if (value < 0 || value > 0xFF) {
+            throw new IllegalArgumentException("Invalid grid value: " + value);
+        }
+
+        long bit = 1L << x;
+        boolean wasFilled = (occupancy[y] & bit) != 0;
+
+        // Keep the fill counts in step when the block changes between empty and filled
+        if (value == 0 && wasFilled) {
+            occupancy[y] &= ~bit;
+            rowFill[y]--;
+            colFill[x]--;
+            hash ^= Zobrist.cell(x, y);
+        } else if (value != 0 && !wasFilled) {
+            occupancy[y] |= bit;
+            rowFill[y]++;
+            colFill[x]++;
+            hash ^= Zobrist.cell(x, y);
+        }
+
+        setColour(x, y, value);
     }
 
     /**
      * Get the value represented at the given x and y index within the grid
      * @param x column
      * @param y row
-     * @return the value
+     * @return the value, or -1 if there is no such index
      */
     public int getGridValue(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
-            //No such index
-            return -1;
-        }
+        if (x < 0 || x >= cols || y < 0 || y >= rows) return -1;
+        return colours[y * cols + x] & 0xFF;
     }
 
     /**
@@ -103,29 +257,41 @@ public class Grid {
      * @return whether you can place the piece at the given coordinates or not
      */
     public boolean canPlayPiece(GamePiece gamePiece, int x, int y) {
-        int[][] blocks = gamePiece.getBlocks();
-
-        // Iterate through each block of the piece
-        for (int xPiece=0; xPiece < blocks.length; xPiece++) {
-            for (int yPiece=0; yPiece < blocks[xPiece].length; yPiece++) {
-
-                // Check if there is something already there
-                if (blocks[xPiece][yPiece] != 0) {
-
-                    // Calculate the game grid position
-                    int xGrid = x + xPiece;
-                    int yGrid = y + yPiece;
+        return canPlayShape(gamePiece.getShape(), x, y);
+    }
 
-                    // Check if the position is outside of the game grid bounds
-                    if (xGrid < 0 ||xGrid >= cols || yGrid < 0 || yGrid >= rows) return false;
+    /**
+     * Get whether a piece shape fits at the given coordinates, with its top left block at x and y. Each row of the
+     * shape is shifted onto the matching row of the bitboard and checked with a single AND, so no memory is allocated.
+     * @param shape the shape mask of the piece, as given by {@link GamePiece#getShape()}
+     * @param x column
+     * @param y row
+     * @return whether the shape fits at the given coordinates or not
+     */
+    public boolean canPlayShape(int shape, int x, int y) {
+        return BitBoard.fits(occupancy, cols, rows, shape, x, y);
+    }
 
-                    // Check if the grid position is not empty
-                    if (getGridValue(xGrid, yGrid) != 0) return false;
-                }
-            }
-        }
+    /**
+     * Get every place a piece can be played, as one word per row with bit x set when the piece fits centred on column
+     * x. These are the same coordinates as {@link #playPiece}, so no trial calls to canPlayPiece are needed.
+     * @param gamePiece gamePiece
+     * @return the legal centres of the piece
+     */
+    public long[] legalPlacements(GamePiece gamePiece) {
+        return legalShapePlacements(gamePiece.getShape(), new long[rows]);
+    }
 
-        return true;
+    /**
+     * Get every place a piece shape can be played, as one word per row with bit x set when the shape fits centred on
+     * column x
+     * @param shape the shape mask of the piece, as given by {@link GamePiece#getShape()}
+     * @param placements an array with one word per row to fill in, so it can be reused between calls
+     * @return the given array, holding the legal centres of the shape
+     */
+    public long[] legalShapePlacements(int shape, long[] placements) {
+        BitBoard.legalCentres(occupancy, cols, rows, shape, placements);
+        return placements;
     }
 
     /**
@@ -137,30 +303,320 @@ public class Grid {
      */
     public boolean playPiece(GamePiece gamePiece, int x, int y) {
         // Get centre offsets and apply them
-        x -= gamePiece.getBlocks().length / 2;
-        y -= gamePiece.getBlocks()[0].length / 2;
+        x -= GamePiece.SIZE / 2;
+        y -= GamePiece.SIZE / 2;
+
+        int shape = gamePiece.getShape();
 
         // Check if the piece can be played
-        if (canPlayPiece(gamePiece, x, y)) {
-            int[][] blocks = gamePiece.getBlocks();
+        if (!canPlayShape(shape, x, y)) return false; // Piece cannot be played
+
+        int value = gamePiece.getValue();
+        beginUpdate();
+        for (int yPiece = 0; yPiece < 3; yPiece++) {
+            int rowMask = (shape >>> (yPiece * 3)) & 0b111;
+            if (rowMask == 0) continue;
+
+            // Fill in the whole row of the piece on the bitboard at once
+            int yGrid = y + yPiece;
+            occupancy[yGrid] |= BitBoard.shiftRow(rowMask, x);
+            rowFill[yGrid] += Integer.bitCount(rowMask);
+
+            // Then update the colour, column count and hash of each block that is part of the piece
+            for (int xPiece = 0; xPiece < 3; xPiece++) {
+                if ((rowMask & (1 << xPiece)) != 0) {
+                    colFill[x + xPiece]++;
+                    hash ^= Zobrist.cell(x + xPiece, yGrid);
+                    setColour(x + xPiece, yGrid, value);
+                }
+            }
+        }
+
+        // Remember where the piece went so clearLines only has to check the lines it touched
+        lastShape = shape;
+        lastX = x;
+        lastY = y;
+        endUpdate();
+
+        return true; // Piece was played successfully
+    }
+
+    /**
+     * Clears any full rows and columns touched by the last piece played. Only the rows and columns that piece covered
+     * are checked, using the fill counts, so the cost does not depend on the size of the grid. The blocks that were
+     * removed can be read afterwards through {@link #getClearedCells()}.
+     * @return the number of lines cleared
+     */
+    public int clearLines() {
+        long[] cleared = clearedCells;
+
+        // The cleared blocks are only reset if the last call found any, so moves that clear nothing stay cheap
+        if (clearedCount != 0) {
+            Arrays.fill(cleared, 0);
+            clearedCount = 0;
+        }
+
+        int shape = lastShape;
+        if (shape == 0) return 0;
+        lastShape = 0;
+
+        int lines = 0;
+        long fullRow = BitBoard.fullRowMask(cols);
+
+        // Check for full rows among the rows the piece covered
+        for (int yPiece = 0; yPiece < 3; yPiece++) {
+            if (((shape >>> (yPiece * 3)) & 0b111) == 0) continue;
+
+            int yGrid = lastY + yPiece;
+            if (rowFill[yGrid] == cols) {
+                cleared[yGrid] = fullRow;
+                lines++;
+            }
+        }
+
+        // Check for full columns among the columns the piece covered
+        int columnsCovered = (shape | (shape >>> 3) | (shape >>> 6)) & 0b111;
+        for (int xPiece = 0; xPiece < 3; xPiece++) {
+            if ((columnsCovered & (1 << xPiece)) == 0) continue;
+
+            int xGrid = lastX + xPiece;
+            if (colFill[xGrid] == rows) {
+                long bit = 1L << xGrid;
+                for (int y = 0; y < rows; y++) {
+                    cleared[y] |= bit;
+                }
+                lines++;
+            }
+        }
 
-            for (int xPiece = 0; xPiece < blocks.length; xPiece++) {
-                for (int yPiece = 0; yPiece < blocks[xPiece].length; yPiece++) {
+        if (lines == 0) return 0;
 
-                    // Checks if the current block is part of the piece to be played, and if so, update the grid to fill the block in
-                    if (blocks[xPiece][yPiece] != 0) {
-                        int xGrid = x + xPiece;
-                        int yGrid = y + yPiece;
+        // Remove the cleared blocks, one row at a time
+        beginUpdate();
+        for (int y = 0; y < rows; y++) {
+            long rowMask = cleared[y];
+            if (rowMask == 0) continue;
+
+            occupancy[y] &= ~rowMask;
+            rowFill[y] -= Long.bitCount(rowMask);
+
+            clearedCount += Long.bitCount(rowMask);
+            for (long remaining = rowMask; remaining != 0; remaining &= remaining - 1) {
+                int x = Long.numberOfTrailingZeros(remaining);
+                colFill[x]--;
+                hash ^= Zobrist.cell(x, y);
+                setColour(x, y, 0);
+            }
+        }
+        endUpdate();
+
+        return lines;
+    }
+
+    /**
+     * Get the blocks removed by the last call to clearLines, as one word per row with bit x set when the block in
+     * column x was cleared. The array is reused by the next call, so it should not be kept.
+     * @return the cleared blocks
+     */
+    public long[] getClearedCells() {
+        return clearedCells;
+    }
+
+    /**
+     * Get the number of blocks removed by the last call to clearLines
+     * @return the number of blocks cleared
+     */
+    public int getClearedCount() {
+        return clearedCount;
+    }
+
+    /**
+     * Get the number of filled blocks in a row
+     * @param y row
+     * @return the number of filled blocks
+     */
+    public int getRowFill(int y) {
+        return rowFill[y];
+    }
+
+    /**
+     * Get the number of filled blocks in a column
+     * @param x column
+     * @return the number of filled blocks
+     */
+    public int getColFill(int x) {
+        return colFill[x];
+    }
 
-                        this.updateGridValue(xGrid, yGrid, gamePiece.getValue());
+    /**
+     * Writes a value into the colour plane and marks the block as changed if it did. Outside of an update the
+     * listeners are told straight away.
+     * @param x column
+     * @param y row
+     * @param value the new value
+     */
+    private void setColour(int x, int y, int value) {
+        int index = y * cols + x;
+        if ((colours[index] & 0xFF) == value) return;
+
+        colours[index] = (byte) value;
+
+        // Nothing needs to be tracked when nothing is listening, as in headless games
+        if (listeners.isEmpty()) return;
+
+        changedCells[y] |= 1L << x;
+        if (y < changedTop) changedTop = y;
+        if (y > changedBottom) changedBottom = y;
+
+        if (updateDepth == 0) notifyListeners();
+    }
+
+    /**
+     * Tell the listeners about the blocks changed since they were last told, then forget them. Listeners must not
+     * change the grid while they are being told.
+     */
+    private void notifyListeners() {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).gridChanged(changedCells);
+        }
+
+        // Only the rows that had changes need resetting
+        Arrays.fill(changedCells, changedTop, changedBottom + 1, 0);
+        changedTop = rows;
+        changedBottom = -1;
+    }
+
+    /**
+     * Write the blocks of the grid into a buffer: its size, then one bit per block in row order saying whether it is
+     * filled, then the colour of each filled block. Colours take four bits each unless one is too big to fit.
+     * @param buffer the buffer
+     */
+    public void writeState(ByteBuffer buffer) {
+        GameSnapshot.putVarInt(buffer, cols);
+        GameSnapshot.putVarInt(buffer, rows);
+
+        // Every piece value fits in four bits, but values set directly on the grid may not
+        boolean wide = false;
+        for (byte colour : colours) {
+            if ((colour & 0xF0) != 0) {
+                wide = true;
+                break;
+            }
+        }
+        buffer.put((byte) (wide ? 1 : 0));
+
+        // Pack the bitboard rows end to end, so no bits are wasted between rows
+        int acc = 0;
+        int bits = 0;
+        for (int y = 0; y < rows; y++) {
+            long rowMask = occupancy[y];
+            for (int done = 0; done < cols; ) {
+                int take = Math.min(cols - done, 8 - bits);
+                acc |= (int) ((rowMask >>> done) & ((1 << take) - 1)) << bits;
+                bits += take;
+                done += take;
+                if (bits == 8) {
+                    buffer.put((byte) acc);
+                    acc = 0;
+                    bits = 0;
+                }
+            }
+        }
+        if (bits > 0) buffer.put((byte) acc);
+
+        // Then the colours of the filled blocks
+        int pending = -1;
+        for (int y = 0; y < rows; y++) {
+            for (long remaining = occupancy[y]; remaining != 0; remaining &= remaining - 1) {
+                int colour = colours[y * cols + Long.numberOfTrailingZeros(remaining)] & 0xFF;
+                if (wide) {
+                    buffer.put((byte) colour);
+                } else if (pending < 0) {
+                    pending = colour;
+                } else {
+                    buffer.put((byte) (pending | (colour << 4)));
+                    pending = -1;
+                }
+            }
+        }
+        if (pending >= 0) buffer.put((byte) pending);
+    }
+
+    /**
+     * Replace the blocks of the grid with ones written by writeState, as a single update
+     * @param buffer the buffer
+     */
+    public void readState(ByteBuffer buffer) {
+        int savedCols = GameSnapshot.getVarInt(buffer);
+        int savedRows = GameSnapshot.getVarInt(buffer);
+        if (savedCols != cols || savedRows != rows)
+            throw new IllegalArgumentException("Grid size mismatch: " + savedCols + "x" + savedRows);
+
+        boolean wide = buffer.get() != 0;
+
+        // Unpack the occupancy first, as the colours only follow for the filled blocks
+        long[] filled = new long[rows];
+        int acc = 0;
+        int bits = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int done = 0; done < cols; ) {
+                if (bits == 0) {
+                    acc = buffer.get() & 0xFF;
+                    bits = 8;
+                }
+                int take = Math.min(cols - done, bits);
+                filled[y] |= (long) (acc & ((1 << take) - 1)) << done;
+                acc >>>= take;
+                bits -= take;
+                done += take;
+            }
+        }
+
+        beginUpdate();
+        int pending = -1;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                int value = 0;
+                if ((filled[y] & (1L << x)) != 0) {
+                    if (wide) {
+                        value = buffer.get() & 0xFF;
+                    } else if (pending < 0) {
+                        int both = buffer.get() & 0xFF;
+                        value = both & 0xF;
+                        pending = both >>> 4;
+                    } else {
+                        value = pending;
+                        pending = -1;
                     }
                 }
+                updateGridValue(x, y, value);
             }
-            return true; // Piece was played successfully
+        }
 
-        } else {
-            return false; // Piece cannot be played
+        // Nothing has been played on the restored grid, so there are no lines to check
+        if (clearedCount != 0) {
+            Arrays.fill(clearedCells, 0);
+            clearedCount = 0;
         }
+        lastShape = 0;
+        endUpdate();
+    }
+
+    /**
+     * Get the Zobrist hash of the filled blocks, which is the same for any two grids with the same blocks filled
+     * @return the hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the occupancy bitboard row at the given index, with bit x set when the block in column x is filled
+     * @param y row
+     * @return the occupancy of the row
+     */
+    public long getRowOccupancy(int y) {
+        return occupancy[y];
     }
 
     /**
@@ -190,7 +646,7 @@ public class Grid {
 
         for (int y=0; y < getRows(); y++) {
             for (int x=0; x < getCols(); x++) {
-                sb.append(String.format("%" + 3 + "d", getGridProperty(x, y).get()));
+                sb.append(String.format("%" + 3 + "d", getGridValue(x, y)));
             }
 
             sb.append("\n");
@@ -214,11 +670,23 @@ public class Grid {
      * Sets all pieces in the grid to nothing, effectively clearing the grid
      */
     public void clearGrid() {
+        beginUpdate();
         for(var y = 0; y < this.getRows(); y++) {
+            // Skip rows that are already empty
+            if (occupancy[y] == 0) continue;
+
             for(var x = 0; x < this.getCols(); x++) {
-                this.updateGridValue(x, y, 0);
+                if ((occupancy[y] & (1L << x)) != 0) setColour(x, y, 0);
             }
+
+            occupancy[y] = 0;
         }
+
+        Arrays.fill(rowFill, 0);
+        Arrays.fill(colFill, 0);
+        lastShape = 0;
+        hash = 0;
+        endUpdate();
     }
 
 }
@@ -1,17 +1,20 @@
 package uk.ac.soton.comp1206.game;
 
+import javafx.application.Platform;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.scene.ScoresScene;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
 /**
- * An extension of the Game object for a multiplayer game
+ * An extension of the Game object for a multiplayer game. Its pieces come from the server through a
+ * ServerPieceGenerator, so every player gets the same sequence.
+ * <p>
+ * Starting the game waits for the server to send the first two pieces, without blocking the fx thread, and the
+ * player's controls do nothing until it has started.
  */
 public class MultiplayerGame extends Game {
 
@@ -26,9 +29,19 @@ public class MultiplayerGame extends Game {
     private final Communicator communicator;
 
     /**
-     * A queue of pieces that all players use
+     * The generator the pieces come from, which says when the first pieces have arrived
      */
-    private final Queue<GamePiece> receivedGamePieces = new LinkedList<>();
+    private final ServerPieceGenerator serverPieces;
+
+    /**
+     * Whether the game is waiting for the first pieces before it starts
+     */
+    private boolean waitingToStart;
+
+    /**
+     * Whether the game has its first pieces and has started
+     */
+    private boolean started;
 
     /**
      * A list of scores for the in-game leaderboard
@@ -43,41 +56,81 @@ public class MultiplayerGame extends Game {
      * @param communicator the communicator object used to get info to the server
      */
     public MultiplayerGame(int cols, int rows, Communicator communicator) {
-        super(cols, rows);
+        this(cols, rows, communicator, new ServerPieceGenerator(communicator));
+    }
+
+    /**
+     * Create a new game with the specified rows and columns, taking its pieces from the given server generator
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param communicator the communicator object used to get info to the server
+     * @param serverPieces the generator of the pieces sent by the server
+     */
+    private MultiplayerGame(int cols, int rows, Communicator communicator, ServerPieceGenerator serverPieces) {
+        super(cols, rows, serverPieces);
 
         this.communicator = communicator;
-        this.communicator.addListener(this::handleServerMessage);
+        this.serverPieces = serverPieces;
+    }
+
+    /**
+     * Start the game once the server has sent the first two pieces, which are drawn as soon as it starts
+     */
+    @Override
+    public void start() {
+        logger.info("Waiting for the first pieces from the server");
+        this.started = false;
+        this.waitingToStart = true;
 
-        this.requestNextGamePiece(5);
+        // The pieces may arrive on the communicator thread, so the game is started on the fx thread
+        this.serverPieces.whenAvailable(2, () -> Platform.runLater(this::startWithPieces));
     }
 
     /**
-     * Handles what happens when a message is received from the server
-     * @param msg the incoming server message
+     * Start the game now the first pieces are here, unless it was ended while waiting for them
      */
-    private void handleServerMessage(String msg) {
-        if (msg.startsWith("PIECE")) {
-            String receivedGamePieceType = msg.substring("PIECE ".length());
-            logger.debug("Received game piece: {}", receivedGamePieceType);
-            receivedGamePieces.add(GamePiece.GamePieceType.createGamePiece(Integer.parseInt(receivedGamePieceType) + 1));
-        }
+    private void startWithPieces() {
+        if (!this.waitingToStart) return;
+
+        this.waitingToStart = false;
+        this.started = true;
+        super.start();
     }
 
     /**
-     * Sends a message to the server asking for the next piece
+     * Play the current piece if the game has started
+     * @param x the column of the block that was clicked
+     * @param y the row of the block that was clicked
+     * @return whether the current piece was played
      */
-    private void requestNextGamePiece() {
-        this.communicator.send("PIECE");
+    @Override
+    public boolean blockClicked(int x, int y) {
+        return this.started && super.blockClicked(x, y);
     }
 
     /**
-     * Requests a given amount of next pieces from the server
-     * @param pieces the amount of pieces to request
+     * Rotate the current piece if the game has started
+     * @param rotations number of rotations to complete
      */
-    private void requestNextGamePiece(int pieces) {
-        for (int i=0; i < pieces; i++) {
-            requestNextGamePiece();
-        }
+    @Override
+    public void rotateCurrentPiece(int rotations) {
+        if (this.started) super.rotateCurrentPiece(rotations);
+    }
+
+    /**
+     * Swap the current piece with the following piece if the game has started
+     */
+    @Override
+    public void swapCurrentPiece() {
+        if (this.started) super.swapCurrentPiece();
+    }
+
+    /**
+     * Drop the current piece if the game has started
+     */
+    @Override
+    public void dropCurrentPiece() {
+        if (this.started) super.dropCurrentPiece();
     }
 
     /**
@@ -122,19 +175,6 @@ public class MultiplayerGame extends Game {
         this.sendUpdatedBoardToServer();
     }
 
-    /**
-     * Changes the current piece and following piece variables to the next piece.
-     * This method overrides the original nextPiece method. It now gets the next piece from the server
-     */
-    @Override
-    protected void nextPiece() {
-        this.currentPiece = this.followingPiece;
-        this.followingPiece = this.receivedGamePieces.remove();
-
-        this.nextPieceListener.nextPiece(this.currentPiece, this.followingPiece);
-        this.requestNextGamePiece(2); // Asks for 2 more pieces each time as a buffer
-    }
-
     /**
      * Calculates the new score after a line is cleared
      * @param numOfLines the number of lines cleared
@@ -150,6 +190,7 @@ public class MultiplayerGame extends Game {
      */
     @Override
     public void remoteEndGame() {
+        this.waitingToStart = false;
         super.remoteEndGame();
         this.communicator.send("DIE");
     }
@@ -0,0 +1,81 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Packs the column and row of a block into a single int, so coordinates can be passed around and stored without
+ * creating objects. The column is held in the low 16 bits and the row in the high 16 bits, which is plenty for any
+ * board a Grid can hold.
+ * <p>
+ * The component GameBlockCoordinate is easier to use in collections, but this is better on paths that run on every
+ * key press or every cleared block, and it keeps the engine free of any UI classes.
+ */
+public final class PackedCoordinate {
+
+    /**
+     * A value that is never a packed coordinate, used to mean there is no coordinate
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The mask for the column bits
+     */
+    private static final int MASK = 0xFFFF;
+
+    /**
+     * This class only holds static helpers
+     */
+    private PackedCoordinate() {
+    }
+
+    /**
+     * Pack a column and row into a coordinate
+     * @param x column, from 0 to 65535
+     * @param y row, from 0 to 32767
+     * @return the packed coordinate
+     */
+    public static int of(int x, int y) {
+        return (y << 16) | (x & MASK);
+    }
+
+    /**
+     * Get the column of a packed coordinate
+     * @param coordinate the packed coordinate
+     * @return column number
+     */
+    public static int getX(int coordinate) {
+        return coordinate & MASK;
+    }
+
+    /**
+     * Get the row of a packed coordinate
+     * @param coordinate the packed coordinate
+     * @return row number
+     */
+    public static int getY(int coordinate) {
+        return coordinate >>> 16;
+    }
+
+    /**
+     * Move a packed coordinate, wrapping around the edges of a board so it always stays on the board. This is how the
+     * keyboard controls move the selected block.
+     * @param coordinate the packed coordinate
+     * @param x columns to move by
+     * @param y rows to move by
+     * @param cols number of columns on the board
+     * @param rows number of rows on the board
+     * @return the new packed coordinate
+     */
+    public static int addWrapped(int coordinate, int x, int y, int cols, int rows) {
+        int newX = Math.floorMod(getX(coordinate) + x, cols);
+        int newY = Math.floorMod(getY(coordinate) + y, rows);
+        return of(newX, newY);
+    }
+
+    /**
+     * Return a string representation of a packed coordinate
+     * @param coordinate the packed coordinate
+     * @return string representation
+     */
+    public static String toString(int coordinate) {
+        return "(" + getX(coordinate) + ", " + getY(coordinate) + ")";
+    }
+}
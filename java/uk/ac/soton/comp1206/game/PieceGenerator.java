@@ -0,0 +1,17 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A PieceGenerator supplies the sequence of pieces that a game is played with.
+ * <p>
+ * The GameEngine asks its generator for a new piece type every time it needs to spawn a piece, so swapping the
+ * generator changes where pieces come from, for example a seeded random sequence for reproducible games or a queue of
+ * pieces sent by the multiplayer server.
+ */
+public interface PieceGenerator {
+
+    /**
+     * Get the type of the next piece in the sequence
+     * @return the next piece type
+     */
+    GamePiece.GamePieceType nextPieceType();
+}
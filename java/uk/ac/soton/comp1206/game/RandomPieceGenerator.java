@@ -0,0 +1,114 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A PieceGenerator that draws every piece type with equal probability from a seeded SplitMix64 sequence.
+ * <p>
+ * The same seed always produces the same pieces, so games can be replayed and benchmarked exactly. The whole state of
+ * the generator is a single long, which can be read and restored to resume a sequence from any point. Drawing a piece
+ * does not allocate.
+ */
+public class RandomPieceGenerator implements PieceGenerator {
+
+    /**
+     * The golden ratio increment used to step the SplitMix64 state
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The seed this generator was created with
+     */
+    private final long seed;
+
+    /**
+     * The current state of the generator
+     */
+    private long state;
+
+    /**
+     * Create a new generator with a seed taken from the system clock
+     */
+    public RandomPieceGenerator() {
+        this(mix(System.nanoTime() ^ System.currentTimeMillis()));
+    }
+
+    /**
+     * Create a new generator with the given seed
+     * @param seed the seed
+     */
+    public RandomPieceGenerator(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    /**
+     * Get the type of the next piece in the sequence
+     * @return the next piece type
+     */
+    @Override
+    public GamePiece.GamePieceType nextPieceType() {
+        return GamePiece.GamePieceType.fromIndex(nextInt(GamePiece.PIECES));
+    }
+
+    /**
+     * Get the next random number between 0 (inclusive) and the given bound (exclusive)
+     * @param bound the upper bound, which must be positive
+     * @return the random number
+     */
+    public int nextInt(int bound) {
+        // Multiply the top 32 bits by the bound and keep the high half, which maps them evenly onto the range
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Get the next random 64 bit number in the sequence
+     * @return the random number
+     */
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    /**
+     * Get the first random number a generator with the given seed would return, without creating one
+     * @param seed the seed
+     * @return the random number
+     */
+    static long firstLong(long seed) {
+        return mix(seed + GOLDEN_GAMMA);
+    }
+
+    /**
+     * The SplitMix64 output function, which scrambles a state value into a random number
+     * @param z the value to scramble
+     * @return the scrambled value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Get the seed this generator was created with
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the current state of the generator, which can be passed to setState to carry on the sequence from here
+     * @return the state
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Set the current state of the generator
+     * @param state a state previously returned by getState
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
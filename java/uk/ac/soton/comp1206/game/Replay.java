@@ -0,0 +1,394 @@
+package uk.ac.soton.comp1206.game;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A recorded game, held as the starting state of its random piece generator and a log of every action that changed
+ * the game. As the pieces come from the seed, replaying the actions in order gives back exactly the same game.
+ * <p>
+ * Each action is written in a few bytes: one for the type of action and the rotation of the current piece, one for
+ * the type of the current piece, the centre of the piece for placements, and the time since the previous action. The
+ * piece type is not needed to replay the action, but lets a ReplayPlayer check it has not drifted from the recording.
+ */
+public class Replay {
+
+    /**
+     * The version of the format, written at the start of every replay
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The most bytes toBytes writes before the actions
+     */
+    private static final int MAX_HEADER_BYTES = 1 + 4 * 5 + Long.BYTES;
+
+    /**
+     * An action that changed the game
+     */
+    public enum Action {
+        /**
+         * The current piece was played on the grid
+         */
+        PLACE,
+        /**
+         * The current piece was rotated
+         */
+        ROTATE,
+        /**
+         * The current and following pieces were swapped
+         */
+        SWAP,
+        /**
+         * The current piece was dropped without being played
+         */
+        DROP,
+        /**
+         * The game loop timer ran out
+         */
+        TIMEOUT;
+
+        /**
+         * The actions, indexed by ordinal
+         */
+        private static final Action[] VALUES = values();
+    }
+
+    /**
+     * Number of columns in the game
+     */
+    private final int cols;
+
+    /**
+     * Number of rows in the game
+     */
+    private final int rows;
+
+    /**
+     * The state of the random piece generator when the game started
+     */
+    private final long seed;
+
+    /**
+     * The number of actions recorded
+     */
+    private final int actionCount;
+
+    /**
+     * The final score of the game, as scored when it was recorded
+     */
+    private final int score;
+
+    /**
+     * The encoded actions, which may be a view of a larger buffer such as a mapped archive
+     */
+    private final ByteBuffer actions;
+
+    /**
+     * Create a new replay
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param seed the state of the random piece generator when the game started
+     * @param actionCount the number of actions recorded
+     * @param score the final score
+     * @param actions the encoded actions
+     */
+    Replay(int cols, int rows, long seed, int actionCount, int score, ByteBuffer actions) {
+        this.cols = cols;
+        this.rows = rows;
+        this.seed = seed;
+        this.actionCount = actionCount;
+        this.score = score;
+        this.actions = actions.asReadOnlyBuffer();
+    }
+
+    /**
+     * Write an action into a buffer
+     * @param buffer the buffer, which must have at least 22 bytes left
+     * @param action the action
+     * @param piece the current piece
+     * @param x the column of the centre of the piece, for placements
+     * @param y the row of the centre of the piece, for placements
+     * @param delay the time since the previous action in milliseconds
+     */
+    static void writeAction(ByteBuffer buffer, Action action, GamePiece piece, int x, int y, long delay) {
+        buffer.put((byte) (action.ordinal() | piece.getRotation() << 3));
+        buffer.put((byte) piece.getType().ordinal());
+
+        if (action == Action.PLACE) {
+            GameSnapshot.putVarInt(buffer, x);
+            GameSnapshot.putVarInt(buffer, y);
+        }
+
+        GameSnapshot.putVarLong(buffer, delay);
+    }
+
+    /**
+     * Encode the replay, so it can be stored or sent
+     * @return the encoded replay
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_BYTES + actions.remaining());
+        writeHeader(buffer);
+        buffer.put(actions.duplicate());
+
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Write everything but the actions into a buffer
+     * @param buffer the buffer, which must have at least MAX_HEADER_BYTES left
+     */
+    private void writeHeader(ByteBuffer buffer) {
+        buffer.put((byte) VERSION);
+        GameSnapshot.putVarInt(buffer, cols);
+        GameSnapshot.putVarInt(buffer, rows);
+        buffer.putLong(seed);
+        GameSnapshot.putVarInt(buffer, score);
+        GameSnapshot.putVarInt(buffer, actionCount);
+    }
+
+    /**
+     * Decode a replay encoded by toBytes. The rest of the buffer is taken as the actions, which are read from the
+     * buffer in place rather than copied.
+     * @param buffer the buffer, positioned at the start of the replay
+     * @return the replay
+     */
+    public static Replay fromBytes(ByteBuffer buffer) {
+        int version = buffer.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported replay version: " + version);
+
+        int cols = GameSnapshot.getVarInt(buffer);
+        int rows = GameSnapshot.getVarInt(buffer);
+        long seed = buffer.getLong();
+        int score = GameSnapshot.getVarInt(buffer);
+        int actionCount = GameSnapshot.getVarInt(buffer);
+
+        return new Replay(cols, rows, seed, actionCount, score, buffer.slice());
+    }
+
+    /**
+     * Create a reader to step through the actions from the start
+     * @return the reader
+     */
+    public Reader reader() {
+        return new Reader(0, 0, 0);
+    }
+
+    /**
+     * Create a reader to step through the actions from part way through, as given by an earlier reader
+     * @param index the number of actions already read
+     * @param offset the position of the next action in the encoded actions
+     * @param time the time of the last action read, in milliseconds since the game started
+     * @return the reader
+     */
+    public Reader reader(int index, int offset, long time) {
+        if (index < 0 || index > actionCount) throw new IndexOutOfBoundsException("No such action: " + index);
+        return new Reader(index, offset, time);
+    }
+
+    /**
+     * Get the number of columns in the game
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in the game
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the state of the random piece generator when the game started
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the number of actions recorded
+     * @return the number of actions
+     */
+    public int getActionCount() {
+        return actionCount;
+    }
+
+    /**
+     * Get the final score of the game, as scored when it was recorded
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the size of the encoded actions
+     * @return the size in bytes
+     */
+    public int getSize() {
+        return actions.remaining();
+    }
+
+    /**
+     * Transforms the replay into a string for debugging
+     * @return the replay string
+     */
+    @Override
+    public String toString() {
+        return String.format("Replay(%dx%d, seed %016x, %d actions in %d bytes, score %d)", cols, rows, seed,
+                actionCount, actions.remaining(), score);
+    }
+
+    /**
+     * Steps through the actions of a replay one at a time. The fields of the current action are overwritten by each
+     * step, so reading a replay does not allocate.
+     */
+    public class Reader {
+
+        /**
+         * The encoded actions left to read
+         */
+        private final ByteBuffer buffer = actions.duplicate();
+
+        /**
+         * The number of actions read
+         */
+        private int index;
+
+        /**
+         * The current action
+         */
+        private Action action;
+
+        /**
+         * The type of the current piece when the action happened
+         */
+        private GamePiece.GamePieceType piece;
+
+        /**
+         * The rotation of the current piece when the action happened
+         */
+        private int rotation;
+
+        /**
+         * The column of the centre of the piece, for placements
+         */
+        private int x;
+
+        /**
+         * The row of the centre of the piece, for placements
+         */
+        private int y;
+
+        /**
+         * The time the action happened, in milliseconds since the game started
+         */
+        private long time;
+
+        /**
+         * Create a new reader
+         * @param index the number of actions already read
+         * @param offset the position of the next action in the encoded actions
+         * @param time the time of the last action read
+         */
+        private Reader(int index, int offset, long time) {
+            this.index = index;
+            this.time = time;
+            this.buffer.position(offset);
+        }
+
+        /**
+         * Read the next action
+         * @return whether there was another action
+         */
+        public boolean next() {
+            if (index == actionCount) return false;
+
+            int header = buffer.get();
+            action = Action.VALUES[header & 0b111];
+            rotation = (header >>> 3) & 0b11;
+            piece = GamePiece.GamePieceType.fromIndex(buffer.get());
+
+            if (action == Action.PLACE) {
+                x = GameSnapshot.getVarInt(buffer);
+                y = GameSnapshot.getVarInt(buffer);
+            }
+
+            time += GameSnapshot.getVarLong(buffer);
+            index++;
+            return true;
+        }
+
+        /**
+         * Get the position of the next action in the encoded actions, which can be passed to Replay.reader to carry on
+         * from here
+         * @return the offset in bytes
+         */
+        public int getOffset() {
+            return buffer.position();
+        }
+
+        /**
+         * Get the number of actions read so far
+         * @return the number of actions
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the current action
+         * @return the action
+         */
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * Get the type of the current piece when the action happened
+         * @return the piece type
+         */
+        public GamePiece.GamePieceType getPiece() {
+            return piece;
+        }
+
+        /**
+         * Get the rotation of the current piece when the action happened, which for rotations is after the rotation
+         * @return the rotation
+         */
+        public int getRotation() {
+            return rotation;
+        }
+
+        /**
+         * Get the column of the centre of the piece, for placements
+         * @return the column
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * Get the row of the centre of the piece, for placements
+         * @return the row
+         */
+        public int getY() {
+            return y;
+        }
+
+        /**
+         * Get the time the action happened
+         * @return the time in milliseconds since the game started
+         */
+        public long getTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only file of recorded games, read through a memory mapping so any game can be opened without reading the
+ * ones before it.
+ * <p>
+ * Each game is stored as a record holding the encoded Replay and a snapshot of the game every KEYFRAME_INTERVAL
+ * actions, along with a table saying where each snapshot is and where its action starts in the replay. A second file
+ * next to the archive holds the offset of every record, eight bytes each, so finding a game is a single read. Seeking
+ * to any move restores the snapshot at or before it and replays at most KEYFRAME_INTERVAL - 1 actions, so it takes
+ * the same time wherever the move is.
+ * <p>
+ * A record is only written to the index once it is safely in the archive, so a crash part way through an append
+ * leaves the archive as it was before, and the partial record is overwritten by the next append.
+ */
+public class ReplayArchive implements AutoCloseable {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(ReplayArchive.class);
+
+    /**
+     * The number of actions between keyframe snapshots
+     */
+    public static final int KEYFRAME_INTERVAL = 32;
+
+    /**
+     * Written at the start of every record, to catch an index that does not match its archive
+     */
+    private static final int RECORD_MAGIC = 0x54524550;
+
+    /**
+     * The size of the fixed part of a record: the magic number, the record length, the keyframe interval, the number
+     * of keyframes and the length of the replay
+     */
+    private static final int RECORD_HEADER_BYTES = 5 * Integer.BYTES;
+
+    /**
+     * The size of each keyframe table entry: the offset of its action in the encoded actions, the time of the action
+     * before it, and the offset and length of its snapshot in the record
+     */
+    private static final int KEYFRAME_BYTES = 3 * Integer.BYTES + Long.BYTES;
+
+    /**
+     * The archive shared by the scenes, created when first used
+     */
+    private static ReplayArchive instance;
+
+    /**
+     * The archive file
+     */
+    private final FileChannel archive;
+
+    /**
+     * The index file
+     */
+    private final FileChannel index;
+
+    /**
+     * The number of games in the archive
+     */
+    private int gameCount;
+
+    /**
+     * The offset the next record will be written at
+     */
+    private long end;
+
+    /**
+     * The mapping of the archive, which is remapped when games are added
+     */
+    private MappedByteBuffer archiveMap;
+
+    /**
+     * The mapping of the index
+     */
+    private MappedByteBuffer indexMap;
+
+    /**
+     * Open an archive, creating it if it does not exist
+     * @param path the archive file, with the index kept next to it
+     * @throws IOException if the files cannot be opened
+     */
+    public ReplayArchive(Path path) throws IOException {
+        this.archive = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.index = FileChannel.open(path.resolveSibling(path.getFileName() + ".idx"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Ignore a partly written index entry, and anything in the archive after the last indexed record
+        this.gameCount = (int) (index.size() / Long.BYTES);
+        if (gameCount > 0) {
+            long last = readIndex(gameCount - 1);
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            archive.read(length, last + Integer.BYTES);
+            this.end = last + length.getInt(0);
+        }
+
+        logger.info("Opened replay archive {} with {} games", path, gameCount);
+    }
+
+    /**
+     * Gets the archive shared by the scenes, opening it in the data folder if it isn't open yet
+     * @return the shared ReplayArchive
+     * @throws IOException if the archive cannot be opened
+     */
+    public static synchronized ReplayArchive getInstance() throws IOException {
+        if (instance == null) {
+            Path path = Paths.get(System.getProperty("user.dir"), "data", "replays.bin");
+            Files.createDirectories(path.getParent());
+            instance = new ReplayArchive(path);
+        }
+        return instance;
+    }
+
+    /**
+     * Add a game to the end of the archive. The game is re-simulated to take the keyframe snapshots.
+     * @param replay the replay of the game
+     * @return the number of the game in the archive
+     * @throws IOException if the archive cannot be written
+     */
+    public synchronized int append(Replay replay) throws IOException {
+        byte[] replayBytes = replay.toBytes();
+        int keyframes = replay.getActionCount() / KEYFRAME_INTERVAL + 1;
+        int snapshotSize = GameSnapshot.maxSize(replay.getCols(), replay.getRows());
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + keyframes * KEYFRAME_BYTES + replayBytes.length
+                + keyframes * snapshotSize);
+        record.position(RECORD_HEADER_BYTES + keyframes * KEYFRAME_BYTES);
+        record.put(replayBytes);
+
+        // Play the game through, snapshotting it at the start and every interval after
+        ReplayPlayer player = new ReplayPlayer(replay);
+        for (int keyframe = 0; keyframe < keyframes; keyframe++) {
+            player.stepTo(keyframe * KEYFRAME_INTERVAL);
+
+            int snapshotStart = record.position();
+            GameSnapshot.write(player.getEngine(), record);
+
+            int entry = RECORD_HEADER_BYTES + keyframe * KEYFRAME_BYTES;
+            record.putInt(entry, player.getResumeOffset());
+            record.putLong(entry + Integer.BYTES, player.getResumeTime());
+            record.putInt(entry + Integer.BYTES + Long.BYTES, snapshotStart);
+            record.putInt(entry + 2 * Integer.BYTES + Long.BYTES, record.position() - snapshotStart);
+        }
+
+        int length = record.position();
+        record.putInt(0, RECORD_MAGIC);
+        record.putInt(Integer.BYTES, length);
+        record.putInt(2 * Integer.BYTES, KEYFRAME_INTERVAL);
+        record.putInt(3 * Integer.BYTES, keyframes);
+        record.putInt(4 * Integer.BYTES, replayBytes.length);
+        record.flip();
+
+        // Write the record before indexing it, so the index never points at a partial record
+        long offset = end;
+        writeFully(archive, record, offset);
+        archive.force(false);
+
+        ByteBuffer entry = ByteBuffer.allocate(Long.BYTES).putLong(0, offset);
+        writeFully(index, entry, (long) gameCount * Long.BYTES);
+        index.force(false);
+
+        end = offset + length;
+        archiveMap = null;
+        indexMap = null;
+
+        logger.debug("Archived game {}: {} actions in {} bytes", gameCount, replay.getActionCount(), length);
+        return gameCount++;
+    }
+
+    /**
+     * Get the number of games in the archive
+     * @return the number of games
+     */
+    public synchronized int getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Get the replay of a game. The actions are read from the mapping in place rather than copied.
+     * @param game the number of the game
+     * @return the replay
+     * @throws IOException if the archive cannot be read
+     */
+    public synchronized Replay getReplay(int game) throws IOException {
+        ByteBuffer record = record(game);
+        int keyframes = record.getInt(3 * Integer.BYTES);
+        int replayLength = record.getInt(4 * Integer.BYTES);
+        int replayStart = RECORD_HEADER_BYTES + keyframes * KEYFRAME_BYTES;
+
+        return Replay.fromBytes(record.slice(replayStart, replayLength));
+    }
+
+    /**
+     * Get a player for a game with the given number of actions already played, ready to carry on from there
+     * @param game the number of the game
+     * @param move the number of actions to have played, which is capped to the length of the game
+     * @return the player
+     * @throws IOException if the archive cannot be read
+     */
+    public synchronized ReplayPlayer seek(int game, int move) throws IOException {
+        ByteBuffer record = record(game);
+        int interval = record.getInt(2 * Integer.BYTES);
+        int keyframes = record.getInt(3 * Integer.BYTES);
+        int replayLength = record.getInt(4 * Integer.BYTES);
+        int replayStart = RECORD_HEADER_BYTES + keyframes * KEYFRAME_BYTES;
+
+        Replay replay = Replay.fromBytes(record.slice(replayStart, replayLength));
+        int target = Math.max(0, Math.min(move, replay.getActionCount()));
+        int keyframe = Math.min(target / interval, keyframes - 1);
+
+        // Restore the nearest snapshot, then play the few actions between it and the move
+        int entry = RECORD_HEADER_BYTES + keyframe * KEYFRAME_BYTES;
+        int actionOffset = record.getInt(entry);
+        long time = record.getLong(entry + Integer.BYTES);
+        int snapshotStart = record.getInt(entry + Integer.BYTES + Long.BYTES);
+        int snapshotLength = record.getInt(entry + 2 * Integer.BYTES + Long.BYTES);
+
+        ReplayPlayer player = new ReplayPlayer(replay, record.slice(snapshotStart, snapshotLength),
+                keyframe * interval, actionOffset, time);
+        player.stepTo(target);
+        return player;
+    }
+
+    /**
+     * Get a view of the record of a game from the mapping
+     * @param game the number of the game
+     * @return the record
+     * @throws IOException if the archive cannot be read or the record is damaged
+     */
+    private ByteBuffer record(int game) throws IOException {
+        if (game < 0 || game >= gameCount) throw new IndexOutOfBoundsException("No such game: " + game);
+
+        long offset = readIndex(game);
+        if (archiveMap == null) {
+            if (end > Integer.MAX_VALUE) throw new IOException("Archive too large to map: " + end);
+            archiveMap = archive.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        }
+
+        if (archiveMap.getInt((int) offset) != RECORD_MAGIC) throw new IOException("Damaged record for game " + game);
+        int length = archiveMap.getInt((int) offset + Integer.BYTES);
+        return archiveMap.slice((int) offset, length);
+    }
+
+    /**
+     * Read the offset of a record from the index
+     * @param game the number of the game
+     * @return the offset of its record in the archive
+     * @throws IOException if the index cannot be read
+     */
+    private long readIndex(int game) throws IOException {
+        if (indexMap == null) {
+            indexMap = index.map(FileChannel.MapMode.READ_ONLY, 0, (long) gameCount * Long.BYTES);
+        }
+        return indexMap.getLong(game * Long.BYTES);
+    }
+
+    /**
+     * Write the whole of a buffer to a channel at a given position
+     * @param channel the channel
+     * @param buffer the buffer
+     * @param position the position in the channel
+     * @throws IOException if the channel cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Close the archive files
+     * @throws IOException if the files cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        archiveMap = null;
+        indexMap = null;
+        archive.close();
+        index.close();
+    }
+}
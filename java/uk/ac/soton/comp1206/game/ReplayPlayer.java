@@ -0,0 +1,279 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * Plays a Replay back on a headless GameEngine, re-simulating the game from its seed under the current rules.
+ * <p>
+ * A replay can be run to the end as fast as possible, for example to re-score it after the rules change, or played
+ * back in time with the recording at any speed. To watch it, link a GameBoard to the grid of the player's engine and
+ * play it with Platform::runLater as the executor.
+ * <p>
+ * Each action is checked against the piece that was current when it was recorded, so a replay that no longer matches
+ * the game fails straight away rather than carrying on with a different game.
+ */
+public class ReplayPlayer {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(ReplayPlayer.class);
+
+    /**
+     * The replay being played
+     */
+    private final Replay replay;
+
+    /**
+     * The engine the replay is played on
+     */
+    private final GameEngine engine;
+
+    /**
+     * The reader holding the next action to play
+     */
+    private final Replay.Reader reader;
+
+    /**
+     * Whether the reader holds an action that has not been played yet
+     */
+    private boolean hasNext;
+
+    /**
+     * The number of actions played
+     */
+    private int position;
+
+    /**
+     * The position of the next action to play in the encoded actions
+     */
+    private int resumeOffset;
+
+    /**
+     * The time of the last action played, in milliseconds since the game started
+     */
+    private long resumeTime;
+
+    /**
+     * The timeout used to wait between actions during timed playback
+     */
+    private TimerWheel.Timeout playbackTimeout;
+
+    /**
+     * The executor actions are played on during timed playback
+     */
+    private volatile Executor playbackExecutor;
+
+    /**
+     * The playback speed, where 1 is the speed the game was played at
+     */
+    private volatile double speed = 1;
+
+    /**
+     * Create a new player for a replay, with a fresh engine at the start of the game
+     * @param replay the replay
+     */
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+        this.engine = new GameEngine(replay.getCols(), replay.getRows(), new RandomPieceGenerator(replay.getSeed()));
+        this.engine.start();
+
+        this.reader = replay.reader();
+        this.advance();
+    }
+
+    /**
+     * Create a new player for a replay, carrying on from a snapshot taken part way through. ReplayArchive uses this to
+     * seek from its keyframes.
+     * @param replay the replay
+     * @param snapshot a snapshot of the game after the given number of actions
+     * @param position the number of actions played when the snapshot was taken
+     * @param offset the position of the next action in the encoded actions
+     * @param time the time of the last action played
+     */
+    ReplayPlayer(Replay replay, ByteBuffer snapshot, int position, int offset, long time) {
+        this.replay = replay;
+        this.engine = new GameEngine(replay.getCols(), replay.getRows(), new RandomPieceGenerator(replay.getSeed()));
+        this.engine.start();
+        GameSnapshot.restore(this.engine, snapshot);
+
+        this.position = position;
+        this.reader = replay.reader(position, offset, time);
+        this.advance();
+    }
+
+    /**
+     * Read the next action, remembering where it starts so the player can be resumed from here
+     */
+    private void advance() {
+        this.resumeOffset = reader.getOffset();
+        this.resumeTime = reader.getTime();
+        this.hasNext = reader.next();
+    }
+
+    /**
+     * Re-simulate a replay to the end as fast as possible
+     * @param replay the replay
+     * @return the engine at the end of the game
+     */
+    public static GameEngine simulate(Replay replay) {
+        ReplayPlayer player = new ReplayPlayer(replay);
+        player.runToEnd();
+        return player.getEngine();
+    }
+
+    /**
+     * Play the next action
+     * @return whether there are any more actions
+     */
+    public boolean step() {
+        if (!hasNext) return false;
+
+        GamePiece current = engine.getCurrentPiece();
+        if (current.getType() != reader.getPiece())
+            throw new IllegalStateException("Replay out of sync at action " + reader.getIndex() + ": expected "
+                    + reader.getPiece() + " but the current piece is " + current.getType());
+
+        switch (reader.getAction()) {
+            case PLACE -> {
+                if (!engine.blockClicked(reader.getX(), reader.getY()))
+                    throw new IllegalStateException("Replay out of sync at action " + reader.getIndex()
+                            + ": piece does not fit at " + reader.getX() + "," + reader.getY());
+            }
+            case ROTATE -> engine.rotateCurrentPiece(reader.getRotation() - current.getRotation());
+            case SWAP -> engine.swapCurrentPiece();
+            case DROP -> engine.dropCurrentPiece();
+            case TIMEOUT -> engine.gameLoop();
+        }
+
+        position++;
+        advance();
+        return hasNext;
+    }
+
+    /**
+     * Play actions until the given number have been played, or the replay ends
+     * @param target the number of actions
+     */
+    public void stepTo(int target) {
+        while (position < target && step()) {
+            // Keep going
+        }
+    }
+
+    /**
+     * Play every action left
+     */
+    public void runToEnd() {
+        while (step()) {
+            // Keep going
+        }
+    }
+
+    /**
+     * Start playing the actions in time with the recording. Each action is handed to the executor to play, so on the
+     * fx thread the engine and anything linked to it only change on that thread.
+     * @param speed the playback speed, where 1 is the speed the game was played at
+     * @param executor the executor to play the actions on
+     */
+    public void play(double speed, Executor executor) {
+        if (speed <= 0) throw new IllegalArgumentException("Invalid playback speed: " + speed);
+
+        this.speed = speed;
+        this.playbackExecutor = executor;
+        if (this.playbackTimeout == null) {
+            this.playbackTimeout = TimerWheel.getInstance().newTimeout(() -> playbackExecutor.execute(this::playNext));
+        }
+
+        this.playNext();
+    }
+
+    /**
+     * Change the playback speed, taking effect from the next action
+     * @param speed the playback speed, where 1 is the speed the game was played at
+     */
+    public void setSpeed(double speed) {
+        if (speed <= 0) throw new IllegalArgumentException("Invalid playback speed: " + speed);
+        this.speed = speed;
+    }
+
+    /**
+     * Stop timed playback. It can be carried on with play.
+     */
+    public void stop() {
+        if (this.playbackTimeout != null) this.playbackTimeout.cancel();
+    }
+
+    /**
+     * Play the next action during timed playback, then wait until the one after is due
+     */
+    private void playNext() {
+        if (!hasNext) return;
+
+        long time = reader.getTime();
+        try {
+            if (!step()) {
+                logger.info("Replay finished with score {}", engine.getScore());
+                return;
+            }
+        } catch (IllegalStateException e) {
+            logger.error("Replay stopped", e);
+            return;
+        }
+
+        long delay = (long) ((reader.getTime() - time) / speed);
+        this.playbackTimeout.schedule(delay);
+    }
+
+    /**
+     * Get the replay being played
+     * @return the replay
+     */
+    public Replay getReplay() {
+        return replay;
+    }
+
+    /**
+     * Get the engine the replay is played on
+     * @return the engine
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Get whether there are any more actions to play
+     * @return whether there are more actions
+     */
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * Get the number of actions played
+     * @return the number of actions
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Get the position of the next action to play in the encoded actions
+     * @return the offset in bytes
+     */
+    int getResumeOffset() {
+        return resumeOffset;
+    }
+
+    /**
+     * Get the time of the last action played
+     * @return the time in milliseconds since the game started
+     */
+    long getResumeTime() {
+        return resumeTime;
+    }
+}
@@ -0,0 +1,125 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Records the actions of a game into a Replay. The GameEngine tells its recorder about every action as it happens,
+ * and the recorder starts a new log each time the game is initialised.
+ * <p>
+ * Only games whose pieces come from a RandomPieceGenerator can be replayed, as the recorder only keeps the state of
+ * the generator rather than the pieces themselves. Games with other generators, such as multiplayer games, are not
+ * recorded.
+ */
+public class ReplayRecorder {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(ReplayRecorder.class);
+
+    /**
+     * The most bytes a single action can take up
+     */
+    private static final int MAX_ACTION_BYTES = 2 + 5 + 5 + 10;
+
+    /**
+     * The log of actions, grown as needed
+     */
+    private ByteBuffer log = ByteBuffer.allocate(1024);
+
+    /**
+     * Number of columns in the game being recorded
+     */
+    private int cols;
+
+    /**
+     * Number of rows in the game being recorded
+     */
+    private int rows;
+
+    /**
+     * The state of the random piece generator when the game started
+     */
+    private long seed;
+
+    /**
+     * The number of actions recorded
+     */
+    private int actionCount;
+
+    /**
+     * The time of the last action recorded, in milliseconds since the game started
+     */
+    private long lastTime;
+
+    /**
+     * Whether the current game is being recorded
+     */
+    private boolean recording;
+
+    /**
+     * Start recording a new game. Called before the game's first pieces are spawned.
+     * @param engine the game
+     */
+    void start(GameEngine engine) {
+        log.clear();
+        actionCount = 0;
+        lastTime = 0;
+
+        if (!(engine.getPieceGenerator() instanceof RandomPieceGenerator)) {
+            logger.debug("Not recording game, its pieces are not from a seed");
+            recording = false;
+            return;
+        }
+
+        cols = engine.getCols();
+        rows = engine.getRows();
+        seed = ((RandomPieceGenerator) engine.getPieceGenerator()).getState();
+        recording = true;
+    }
+
+    /**
+     * Record an action
+     * @param action the action
+     * @param piece the current piece
+     * @param x the column of the centre of the piece, for placements
+     * @param y the row of the centre of the piece, for placements
+     * @param time the time of the action in milliseconds since the game started
+     */
+    void record(Replay.Action action, GamePiece piece, int x, int y, long time) {
+        if (!recording) return;
+
+        if (log.remaining() < MAX_ACTION_BYTES) {
+            log = ByteBuffer.wrap(Arrays.copyOf(log.array(), log.capacity() * 2)).position(log.position());
+        }
+
+        // Times are kept relative to the previous action, which are usually small enough to fit in a byte or two
+        long delay = Math.max(0, time - lastTime);
+        lastTime += delay;
+        Replay.writeAction(log, action, piece, x, y, delay);
+        actionCount++;
+    }
+
+    /**
+     * Get whether the current game is being recorded
+     * @return whether it is being recorded
+     */
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Get the replay of the game recorded so far
+     * @param score the score to store with the replay
+     * @return the replay, or null if the game is not being recorded
+     */
+    public Replay getReplay(int score) {
+        if (!recording) return null;
+        byte[] actions = Arrays.copyOf(log.array(), log.position());
+        return new Replay(cols, rows, seed, actionCount, score, ByteBuffer.wrap(actions));
+    }
+}
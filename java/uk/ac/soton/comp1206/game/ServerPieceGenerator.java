@@ -0,0 +1,156 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.network.Communicator;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A PieceGenerator that hands out the pieces sent by the multiplayer server, so that every player in a channel gets
+ * the same sequence.
+ * <p>
+ * The generator never waits for the server, as it is called on the fx thread. A game should not start until
+ * whenAvailable says the first pieces have arrived. If the buffer still runs dry during the game, a random piece is
+ * used so the game can carry on. The player's sequence then no longer matches the rest of the channel, so this is
+ * logged as an error and counted in getFallbackPieces.
+ */
+public class ServerPieceGenerator implements PieceGenerator {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(ServerPieceGenerator.class);
+
+    /**
+     * The number of pieces to ask the server for up front
+     */
+    private static final int INITIAL_PIECES = 5;
+
+    /**
+     * The communicator class for sending and receiving game information
+     */
+    private final Communicator communicator;
+
+    /**
+     * A queue of pieces that all players use. Pieces are added by the communicator thread and taken by the game
+     */
+    private final Queue<GamePiece.GamePieceType> receivedGamePieces = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The generator used if the server has not sent a piece in time
+     */
+    private final PieceGenerator fallbackGenerator = new RandomPieceGenerator();
+
+    /**
+     * The number of pieces that came from the fallback generator instead of the server
+     */
+    private int fallbackPieces;
+
+    /**
+     * The action to run once enough pieces have arrived, or null if nothing is waiting
+     */
+    private Runnable availableAction;
+
+    /**
+     * The number of pieces the waiting action needs
+     */
+    private int availablePieces;
+
+    /**
+     * Create a new generator that requests its pieces through the given communicator
+     * @param communicator the communicator object used to get pieces from the server
+     */
+    public ServerPieceGenerator(Communicator communicator) {
+        this.communicator = communicator;
+        this.communicator.addListener(this::handleServerMessage);
+
+        this.requestNextGamePiece(INITIAL_PIECES);
+    }
+
+    /**
+     * Get the next piece sent by the server, and ask for more to keep a buffer. If no piece has arrived a random one is
+     * used, rather than holding up the fx thread waiting for the server.
+     * @return the next piece type
+     */
+    @Override
+    public GamePiece.GamePieceType nextPieceType() {
+        this.requestNextGamePiece(2); // Asks for 2 more pieces each time as a buffer
+
+        GamePiece.GamePieceType next = this.receivedGamePieces.poll();
+        if (next != null) return next;
+
+        this.fallbackPieces++;
+        logger.error("No game piece received from the server, using a random piece. This game is now out of step with "
+                + "the other players ({} random pieces so far)", this.fallbackPieces);
+        return this.fallbackGenerator.nextPieceType();
+    }
+
+    /**
+     * Run an action once the server has sent at least the given number of pieces. The action runs straight away if
+     * they are already here, otherwise it runs on the communicator thread when the last one arrives. Replaces any
+     * action that is still waiting.
+     * @param pieces the number of pieces needed
+     * @param action the action to run
+     */
+    public void whenAvailable(int pieces, Runnable action) {
+        synchronized (this) {
+            if (this.receivedGamePieces.size() < pieces) {
+                this.availablePieces = pieces;
+                this.availableAction = action;
+                return;
+            }
+            this.availableAction = null;
+        }
+        action.run();
+    }
+
+    /**
+     * Get the number of pieces that were not sent by the server in time and came from a random generator instead. If
+     * this is not zero the player has not had the same pieces as the rest of the channel.
+     * @return the number of random pieces
+     */
+    public int getFallbackPieces() {
+        return this.fallbackPieces;
+    }
+
+    /**
+     * Handles what happens when a message is received from the server
+     * @param msg the incoming server message
+     */
+    private void handleServerMessage(String msg) {
+        if (msg.startsWith("PIECE")) {
+            String receivedGamePieceType = msg.substring("PIECE ".length());
+            logger.debug("Received game piece: {}", receivedGamePieceType);
+
+            try {
+                int index = Integer.parseInt(receivedGamePieceType.trim());
+                receivedGamePieces.add(GamePiece.GamePieceType.fromIndex(index));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                logger.error("Invalid game piece type: {}", receivedGamePieceType);
+                return;
+            }
+
+            // Run the waiting action outside the lock, once it has enough pieces
+            Runnable action = null;
+            synchronized (this) {
+                if (availableAction != null && receivedGamePieces.size() >= availablePieces) {
+                    action = availableAction;
+                    availableAction = null;
+                }
+            }
+            if (action != null) action.run();
+        }
+    }
+
+    /**
+     * Requests a given amount of next pieces from the server
+     * @param pieces the amount of pieces to request
+     */
+    private void requestNextGamePiece(int pieces) {
+        for (int i=0; i < pieces; i++) {
+            this.communicator.send("PIECE");
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel that runs the timers for the whole application on a single thread. Game loops, lobby polling
+ * and anything else that needs a delay registers a Timeout with the shared instance, rather than each starting its own
+ * scheduler thread.
+ * <p>
+ * The wheel is a ring of buckets, each covering one tick. A timeout is linked into the bucket its deadline falls in,
+ * with a count of how many more turns of the wheel to wait if the deadline is further away than one turn. Scheduling,
+ * rescheduling and cancelling a timeout only link or unlink it, so they take constant time, and a Timeout can be
+ * rescheduled any number of times without allocating.
+ * <p>
+ * Timeouts never fire early, and fire at most one tick late. Their tasks run on the wheel thread, so they should be
+ * short, for example handing work to the FX thread with Platform.runLater.
+ */
+public class TimerWheel {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(TimerWheel.class);
+
+    /**
+     * The length of a tick in milliseconds for the shared instance
+     */
+    private static final long DEFAULT_TICK = 10;
+
+    /**
+     * The number of buckets in the shared instance, giving one turn of the wheel every 5 seconds or so
+     */
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * The shared instance
+     */
+    private static TimerWheel instance;
+
+    /**
+     * The length of a tick in nanoseconds
+     */
+    private final long tickNanos;
+
+    /**
+     * The mask used to find the bucket of a tick
+     */
+    private final int mask;
+
+    /**
+     * The first timeout in each bucket
+     */
+    private final Timeout[] buckets;
+
+    /**
+     * The time the wheel was created, which ticks are counted from
+     */
+    private final long startTime;
+
+    /**
+     * The lock guarding the buckets
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The last tick that was processed
+     */
+    private long processedTick;
+
+    /**
+     * The number of timeouts scheduled
+     */
+    private int pending;
+
+    /**
+     * The timeouts due on the current tick, collected so their tasks can run outside the lock
+     */
+    private Timeout[] due = new Timeout[16];
+
+    /**
+     * The generation of each due timeout when it was collected, so one rescheduled in the meantime is skipped
+     */
+    private int[] dueGenerations = new int[16];
+
+    /**
+     * The thread that turns the wheel, started when the first timeout is scheduled
+     */
+    private Thread worker;
+
+    /**
+     * Whether the wheel has been shut down
+     */
+    private boolean shutdown;
+
+    /**
+     * Create a new timer wheel
+     * @param tick the length of a tick in milliseconds
+     * @param wheelSize the number of buckets, which must be a power of two
+     */
+    public TimerWheel(long tick, int wheelSize) {
+        if (tick < 1) throw new IllegalArgumentException("Invalid tick: " + tick);
+        if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1)
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tick);
+        this.mask = wheelSize - 1;
+        this.buckets = new Timeout[wheelSize];
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Gets the timer wheel shared by the whole application, creating it if there isn't one
+     * @return the shared TimerWheel
+     */
+    public static synchronized TimerWheel getInstance() {
+        if (instance == null) {
+            instance = new TimerWheel(DEFAULT_TICK, DEFAULT_WHEEL_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Create a new timeout for a task. The timeout is not scheduled until one of its schedule methods is called.
+     * @param task the task to run when the timeout fires
+     * @return the timeout
+     */
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(task);
+    }
+
+    /**
+     * Stop the wheel thread. Any scheduled timeouts will not fire.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Get the tick a deadline falls on, rounding up so the timeout cannot fire early
+     * @param deadline the deadline, from System.nanoTime
+     * @return the tick
+     */
+    private long tickOf(long deadline) {
+        return Math.floorDiv(deadline - startTime + tickNanos - 1, tickNanos);
+    }
+
+    /**
+     * Link a timeout into the bucket of its deadline. Must hold the lock.
+     * @param timeout the timeout
+     * @param deadline the time the timeout should fire, from System.nanoTime
+     */
+    private void insert(Timeout timeout, long deadline) {
+        // An empty wheel stops turning, so catch up with the ticks that passed while it was idle
+        if (pending == 0) {
+            processedTick = Math.max(processedTick, Math.floorDiv(System.nanoTime() - startTime, tickNanos));
+        }
+
+        timeout.deadline = deadline;
+        long target = Math.max(processedTick + 1, tickOf(deadline));
+        int bucket = (int) (target & mask);
+
+        timeout.rounds = (target - processedTick - 1) / buckets.length;
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) timeout.next.prev = timeout;
+        buckets[bucket] = timeout;
+
+        if (pending++ == 0) {
+            if (worker == null) startWorker();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Unlink a timeout from its bucket. Must hold the lock.
+     * @param timeout the timeout
+     */
+    private void remove(Timeout timeout) {
+        if (timeout.prev != null) timeout.prev.next = timeout.next;
+        else buckets[timeout.bucket] = timeout.next;
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+
+        timeout.next = null;
+        timeout.prev = null;
+        timeout.bucket = -1;
+        pending--;
+    }
+
+    /**
+     * Start the thread that turns the wheel. Must hold the lock.
+     */
+    private void startWorker() {
+        worker = new Thread(this::run, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Turn the wheel until it is shut down, running the tasks of the timeouts that fall due
+     */
+    private void run() {
+        while (true) {
+            long tick;
+            synchronized (lock) {
+                // Sleep while there is nothing to do
+                while (pending == 0 && !shutdown) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Let the next timeout scheduled start a new worker, so the wheel does not stop for good
+                        logger.warn("Timer wheel thread interrupted, it will restart when next needed");
+                        worker = null;
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (shutdown) return;
+                tick = processedTick + 1;
+            }
+
+            // Wait for the next tick to start
+            long wakeTime = startTime + tick * tickNanos;
+            for (long wait = wakeTime - System.nanoTime(); wait > 0; wait = wakeTime - System.nanoTime()) {
+                LockSupport.parkNanos(this, wait);
+            }
+
+            int count = collectDue(tick);
+            for (int i = 0; i < count; i++) {
+                Timeout timeout = due[i];
+                due[i] = null;
+
+                // Skip timeouts that were cancelled or rescheduled after they were collected
+                if (timeout.generation != dueGenerations[i]) continue;
+
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    logger.error("Timer task failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Process a tick, taking the timeouts that are due out of its bucket
+     * @param tick the tick to process
+     * @return the number of due timeouts collected
+     */
+    private int collectDue(long tick) {
+        synchronized (lock) {
+            // The wheel may have caught up while idle, in which case this tick has already passed
+            if (tick != processedTick + 1) return 0;
+
+            processedTick = tick;
+            int count = 0;
+
+            Timeout timeout = buckets[(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+
+                if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                } else {
+                    remove(timeout);
+                    if (count == due.length) {
+                        due = Arrays.copyOf(due, count * 2);
+                        dueGenerations = Arrays.copyOf(dueGenerations, count * 2);
+                    }
+                    due[count] = timeout;
+                    dueGenerations[count] = timeout.generation;
+                    count++;
+
+                    // Repeating timeouts go straight back on the wheel, a whole period after their last deadline
+                    if (timeout.period > 0) insert(timeout, timeout.deadline + timeout.period);
+                }
+
+                timeout = next;
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * A task that can be scheduled on the wheel. A single Timeout is meant to be kept and rescheduled for as long as
+     * its owner needs it.
+     */
+    public class Timeout {
+
+        /**
+         * The task to run when the timeout fires
+         */
+        private final Runnable task;
+
+        /**
+         * The next timeout in the same bucket
+         */
+        private Timeout next;
+
+        /**
+         * The previous timeout in the same bucket
+         */
+        private Timeout prev;
+
+        /**
+         * The bucket the timeout is in, or -1 if it is not scheduled
+         */
+        private int bucket = -1;
+
+        /**
+         * The number of turns of the wheel left before the timeout fires
+         */
+        private long rounds;
+
+        /**
+         * The time the timeout is due to fire, from System.nanoTime
+         */
+        private long deadline;
+
+        /**
+         * The time between repeats in nanoseconds, or 0 if the timeout only fires once
+         */
+        private long period;
+
+        /**
+         * Counts the times the timeout has been scheduled or cancelled
+         */
+        private volatile int generation;
+
+        /**
+         * Create a new timeout
+         * @param task the task to run when the timeout fires
+         */
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Schedule the timeout to fire once, replacing any earlier schedule
+         * @param delay the delay in milliseconds
+         */
+        public void schedule(long delay) {
+            scheduleRepeating(delay, 0);
+        }
+
+        /**
+         * Schedule the timeout to fire after a delay and then repeatedly, replacing any earlier schedule
+         * @param delay the delay before the first run in milliseconds
+         * @param period the time between runs in milliseconds, or 0 to only run once
+         */
+        public void scheduleRepeating(long delay, long period) {
+            synchronized (lock) {
+                if (shutdown) return;
+                if (bucket >= 0) remove(this);
+
+                generation++;
+                this.period = TimeUnit.MILLISECONDS.toNanos(period);
+                insert(this, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+            }
+        }
+
+        /**
+         * Cancel the timeout, so it will not fire until it is scheduled again
+         */
+        public void cancel() {
+            synchronized (lock) {
+                generation++;
+                period = 0;
+                if (bucket >= 0) remove(this);
+            }
+        }
+
+        /**
+         * Get whether the timeout is waiting to fire
+         * @return whether it is scheduled
+         */
+        public boolean isScheduled() {
+            synchronized (lock) {
+                return bucket >= 0;
+            }
+        }
+    }
+}
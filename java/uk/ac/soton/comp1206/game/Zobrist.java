@@ -0,0 +1,84 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Zobrist keys for hashing board states. Every cell has a fixed random key, and the hash of a board is the XOR of the
+ * keys of its filled cells, so it can be updated in place whenever a single cell is filled or emptied. Boards with the
+ * same filled cells always have the same hash, however they were reached.
+ * <p>
+ * The keys are generated from a fixed seed, so hashes are the same between runs and between a Grid and any search
+ * boards copied from it.
+ */
+public final class Zobrist {
+
+    /**
+     * The seed the keys are generated from
+     */
+    private static final long SEED = 0x5DEECE66DL;
+
+    /**
+     * The keys of the cells, indexed by {@code y * Grid.MAX_COLS + x}
+     */
+    private static final long[] CELL_KEYS = new long[Grid.MAX_ROWS * Grid.MAX_COLS];
+
+    /**
+     * The keys of the piece types, indexed by their position in the enum
+     */
+    private static final long[] PIECE_KEYS = new long[GamePiece.PIECES];
+
+    static {
+        for (int i = 0; i < CELL_KEYS.length; i++) {
+            CELL_KEYS[i] = generateKey(i);
+        }
+        for (int i = 0; i < PIECE_KEYS.length; i++) {
+            PIECE_KEYS[i] = generateKey(-1 - i);
+        }
+    }
+
+    /**
+     * This class only has static helpers
+     */
+    private Zobrist() {}
+
+    /**
+     * Get the key of a cell
+     * @param x column
+     * @param y row
+     * @return the key
+     */
+    public static long cell(int x, int y) {
+        return CELL_KEYS[y * Grid.MAX_COLS + x];
+    }
+
+    /**
+     * Get the combined key of the filled cells in one row of a bitboard
+     * @param rowMask the row, with bit x set when the cell in column x is filled
+     * @param y row
+     * @return the XOR of the keys of the filled cells
+     */
+    public static long row(long rowMask, int y) {
+        long key = 0;
+        for (long remaining = rowMask; remaining != 0; remaining &= remaining - 1) {
+            key ^= cell(Long.numberOfTrailingZeros(remaining), y);
+        }
+
+        return key;
+    }
+
+    /**
+     * Get the key of a piece type, for adding the known pieces to a hash
+     * @param type the piece type
+     * @return the key
+     */
+    public static long piece(GamePiece.GamePieceType type) {
+        return PIECE_KEYS[type.ordinal()];
+    }
+
+    /**
+     * Generate the key at an index
+     * @param index the index of the key
+     * @return the key
+     */
+    private static long generateKey(long index) {
+        return RandomPieceGenerator.firstLong(SEED + index);
+    }
+}
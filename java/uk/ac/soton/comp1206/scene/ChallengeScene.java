@@ -1,6 +1,5 @@
 package uk.ac.soton.comp1206.scene;
 
-import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
@@ -20,9 +19,9 @@ import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.game.CellSet;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.game.Multimedia;
@@ -108,14 +107,36 @@ public class ChallengeScene extends BaseScene {
      */
     private Timeline timeline;
 
+    /**
+     * The number of columns on the game board
+     */
+    protected final int boardCols;
 
     /**
-     * Create a new Single Player challenge scene
+     * The number of rows on the game board
+     */
+    protected final int boardRows;
+
+
+    /**
+     * Create a new Single Player challenge scene on a board of the default size
      * @param gameWindow the Game Window
      */
     public ChallengeScene(GameWindow gameWindow) {
+        this(gameWindow, GameWindow.DEFAULT_BOARD_COLS, GameWindow.DEFAULT_BOARD_ROWS);
+    }
+
+    /**
+     * Create a new Single Player challenge scene
+     * @param gameWindow the Game Window
+     * @param boardCols number of columns on the game board
+     * @param boardRows number of rows on the game board
+     */
+    public ChallengeScene(GameWindow gameWindow, int boardCols, int boardRows) {
         super(gameWindow);
-        logger.info("Creating Challenge Scene");
+        this.boardCols = boardCols;
+        this.boardRows = boardRows;
+        logger.info("Creating Challenge Scene with a {}x{} board", boardCols, boardRows);
     }
 
     /**
@@ -273,7 +294,7 @@ public class ChallengeScene extends BaseScene {
      * A method which can be overridden that creates a new game instance
      */
     protected void createGameInstance() {
-        this.game = new Game(5, 5);
+        this.game = new Game(boardCols, boardRows);
     }
 
     /**
@@ -344,7 +365,8 @@ public class ChallengeScene extends BaseScene {
     }
 
     /**
-     * Resets the timer bar
+     * Resets the timer bar to show the time left on the game loop timer, which is less than the full delay when the
+     * game has been restored part way through a turn
      */
     protected void resetTimerBar() {
         // Reset any existing timeline
@@ -352,16 +374,19 @@ public class ChallengeScene extends BaseScene {
             timeline.stop();
         }
 
-        timerBar.setWidth(gameWindow.getWidth());
-        timerBar.setFill(Color.GREEN);
+        double delay = this.getGame().getTimerDelay() / 1000.0;
+        double remaining = Math.min(this.getGame().getTimerRemaining() / 1000.0, delay);
+        double redAt = Math.max(0, remaining - delay * 0.3);
+
+        timerBar.setWidth(gameWindow.getWidth() * remaining / delay);
+        timerBar.setFill(redAt > 0 ? Color.GREEN : Color.RED);
 
-        // Create timeline with keyframes
+        // Create timeline with keyframes, which the game loop listener restarts each time the timer runs out
         timeline = new Timeline(
-                new KeyFrame(Duration.ZERO, new KeyValue(timerBar.widthProperty(), gameWindow.getWidth())),
-                new KeyFrame(Duration.seconds((this.getGame().getTimerDelay() / 1000.0) * 0.7), e -> timerBar.setFill(Color.RED)),
-                new KeyFrame(Duration.seconds(this.getGame().getTimerDelay() / 1000.0), new KeyValue(timerBar.widthProperty(), 0))
+                new KeyFrame(Duration.ZERO, new KeyValue(timerBar.widthProperty(), timerBar.getWidth())),
+                new KeyFrame(Duration.seconds(redAt), e -> timerBar.setFill(Color.RED)),
+                new KeyFrame(Duration.seconds(remaining), new KeyValue(timerBar.widthProperty(), 0))
         );
-        timeline.setCycleCount(Animation.INDEFINITE);
         timeline.play();
     }
 
@@ -373,6 +398,7 @@ public class ChallengeScene extends BaseScene {
     private void nextPiece(GamePiece currentGamePiece, GamePiece followingGamePiece) {
         this.currentPieceBoard.displayPiece(currentGamePiece);
         this.followingPieceBoard.displayPiece(followingGamePiece);
+        this.gameBoard.setPlacementPiece(currentGamePiece);
     }
 
     /**
@@ -381,6 +407,7 @@ public class ChallengeScene extends BaseScene {
      */
     private void rotatePiece(GamePiece currentGamePiece) {
         this.currentPieceBoard.displayPiece(currentGamePiece);
+        this.gameBoard.setPlacementPiece(currentGamePiece);
         Multimedia.getInstance().playAudioFile("rotate.wav");
     }
 
@@ -398,9 +425,10 @@ public class ChallengeScene extends BaseScene {
 
     /**
      * Handles what to do when a key is pressed
+     * Its protected so it can be overridden
      * @param keyEvent the key event generated by the pressed key
      */
-    private void handleKeyPressed(KeyEvent keyEvent) {
+    protected void handleKeyPressed(KeyEvent keyEvent) {
         KeyCode keyCode = keyEvent.getCode();
 
         switch (keyCode) {
@@ -428,32 +456,13 @@ public class ChallengeScene extends BaseScene {
      * @param keyCode the key pressed
      */
     private void handleBlockSelectionByKeyboard(KeyCode keyCode) {
-        GameBlockCoordinate currentlySelectedGameBlockCoordinate = this.gameBoard.gameBlockCurrentlySelected.getCoordinates();
-        GameBlockCoordinate newCoordinate;
-
         switch (keyCode) {
-            case UP, W -> newCoordinate = currentlySelectedGameBlockCoordinate.add(0, -1);
-            case DOWN, S -> newCoordinate = currentlySelectedGameBlockCoordinate.add(0, 1);
-            case LEFT, A -> newCoordinate = currentlySelectedGameBlockCoordinate.add(-1, 0);
-            case RIGHT, D -> newCoordinate = currentlySelectedGameBlockCoordinate.add(1, 0);
-            default -> {
-                logger.warn("The handleBlockSelectionByKeyboard method failed. This should not happen.");
-                newCoordinate = currentlySelectedGameBlockCoordinate.add(0, 0);
-            }
+            case UP, W -> this.gameBoard.moveSelection(0, -1);
+            case DOWN, S -> this.gameBoard.moveSelection(0, 1);
+            case LEFT, A -> this.gameBoard.moveSelection(-1, 0);
+            case RIGHT, D -> this.gameBoard.moveSelection(1, 0);
+            default -> logger.warn("The handleBlockSelectionByKeyboard method failed. This should not happen.");
         }
-
-        this.gameBoard.gameBlockCurrentlySelected = this.gameBoard.getBlock(newCoordinate.getX(), newCoordinate.getY());
-
-        // Clear any hover effects first
-        for (int y=0; y < this.gameBoard.getRows(); y++) {
-            for (int x=0; x < this.gameBoard.getCols(); x++) {
-                GameBlock currentBlock = this.gameBoard.getBlock(x, y);
-                currentBlock.onHover(GameBlock.EnterOrExit.EXIT);
-            }
-        }
-
-        // Apply the hover effect
-        this.gameBoard.gameBlockCurrentlySelected.onHover(GameBlock.EnterOrExit.ENTER);
     }
 
     /**
@@ -469,7 +478,7 @@ public class ChallengeScene extends BaseScene {
      * @param gameBlock the Game Block that was clicked
      */
     protected void blockClicked(GameBlock gameBlock) {
-        this.getGame().blockClicked(gameBlock);
+        this.getGame().blockClicked(gameBlock.getX(), gameBlock.getY());
     }
 
     /**
@@ -485,7 +494,7 @@ public class ChallengeScene extends BaseScene {
      * After it will update the highscore value if needed
      * @param gameBlockCoordinates the coordinates of the game blocks to fade out
      */
-    private void fadeOut(Set<GameBlockCoordinate> gameBlockCoordinates) {
+    private void fadeOut(CellSet gameBlockCoordinates) {
         gameBoard.fadeOut(gameBlockCoordinates);
         Multimedia.getInstance().playAudioFile("clear.wav");
 
@@ -78,6 +78,8 @@ public class MenuScene extends BaseScene {
         // Make buttons
         var playButton = new Button("Play");
         playButton.getStyleClass().add("menu-button");
+        var practiceButton = new Button("Practice");
+        practiceButton.getStyleClass().add("menu-button");
         var multiplayerButton = new Button("Multiplayer");
         multiplayerButton.getStyleClass().add("menu-button");
         var instructionsButton = new Button("How to Play");
@@ -85,12 +87,13 @@ public class MenuScene extends BaseScene {
         var exitButton = new Button("Exit");
         exitButton.getStyleClass().add("menu-button");
 
-        buttonContainer.getChildren().addAll(playButton, multiplayerButton, instructionsButton, exitButton);
+        buttonContainer.getChildren().addAll(playButton, practiceButton, multiplayerButton, instructionsButton, exitButton);
         mainPane.setBottom(buttonContainer);
         BorderPane.setAlignment(buttonContainer, Pos.CENTER);
 
         //Bind the playButton action to the startGame method in the menu
         playButton.setOnAction(this::startGame);
+        practiceButton.setOnAction(this::startPractice);
         instructionsButton.setOnAction(this::switchToInstructionsMenu);
         multiplayerButton.setOnAction(this::switchToLobby);
         exitButton.setOnAction(this::exitGame);
@@ -113,6 +116,14 @@ public class MenuScene extends BaseScene {
         gameWindow.startChallenge();
     }
 
+    /**
+     * Handle when the Practice button is pressed
+     * @param event event
+     */
+    private void startPractice(ActionEvent event) {
+        gameWindow.startPractice();
+    }
+
     /**
      * Switches to the instructions menu
      * @param event the event generated from clicking on the instructions button
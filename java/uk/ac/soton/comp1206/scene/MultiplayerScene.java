@@ -59,12 +59,23 @@ public class MultiplayerScene extends ChallengeScene {
     private OpponentBoardScene opponentBoardScene;
 
     /**
-     * Create a new Single Player challenge scene
+     * Create a new Multiplayer challenge scene on a board of the default size
      *
      * @param gameWindow the Game Window
      */
     public MultiplayerScene(GameWindow gameWindow) {
-        super(gameWindow);
+        this(gameWindow, GameWindow.DEFAULT_BOARD_COLS, GameWindow.DEFAULT_BOARD_ROWS);
+    }
+
+    /**
+     * Create a new Multiplayer challenge scene
+     *
+     * @param gameWindow the Game Window
+     * @param boardCols number of columns on the game board, which every player in the channel uses
+     * @param boardRows number of rows on the game board, which every player in the channel uses
+     */
+    public MultiplayerScene(GameWindow gameWindow, int boardCols, int boardRows) {
+        super(gameWindow, boardCols, boardRows);
     }
 
     /**
@@ -220,13 +231,14 @@ public class MultiplayerScene extends ChallengeScene {
             String opponentName = parts[0];
             String[] values = parts[1].split(" ");
 
-            // Create grid for the PieceBoard
-            Grid grid = new Grid(5, 5);
+            // Create grid for the PieceBoard, which is the same size as our own
+            Grid grid = new Grid(boardCols, boardRows);
 
-            // Parse values into the grid
-            for (int i = 0; i < values.length; i++) {
-                int row = i / 5;
-                int col = i % 5;
+            // Parse values into the grid, ignoring any past the end of the board
+            int cells = Math.min(values.length, boardCols * boardRows);
+            for (int i = 0; i < cells; i++) {
+                int row = i / boardCols;
+                int col = i % boardCols;
                 grid.updateGridValue(col, row, Integer.parseInt(values[i]));
             }
 
@@ -246,7 +258,7 @@ public class MultiplayerScene extends ChallengeScene {
      * @param scores the string of scores to parse
      * @return the list of leaderboard entry objects
      */
-    private List<Leaderboard.LeaderboardEntry> parseStringScores(String scores) {
+    public static List<Leaderboard.LeaderboardEntry> parseStringScores(String scores) {
         String[] scoresStr = scores.substring("SCORES ".length()).split("\n");
         List<Leaderboard.LeaderboardEntry> scoresArr = new ArrayList<>();
 
@@ -282,7 +294,7 @@ public class MultiplayerScene extends ChallengeScene {
      */
     @Override
     protected void createGameInstance() {
-        this.game = new MultiplayerGame(5, 5, this.gameWindow.getCommunicator());
+        this.game = new MultiplayerGame(boardCols, boardRows, this.gameWindow.getCommunicator());
     }
 
     /**
@@ -324,7 +336,7 @@ public class MultiplayerScene extends ChallengeScene {
         });
 
         // Initialize the opponent board scene
-        opponentBoardScene = new OpponentBoardScene(gameWindow);
+        opponentBoardScene = new OpponentBoardScene(gameWindow, boardCols, boardRows);
         opponentBoardScene.build();
         opponentBoardScene.initialise();
 
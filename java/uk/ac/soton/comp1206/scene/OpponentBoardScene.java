@@ -69,12 +69,34 @@ public class OpponentBoardScene extends BaseScene {
         NEXT
     }
 
+    /**
+     * The number of columns on the opponents' boards
+     */
+    private final int boardCols;
+
+    /**
+     * The number of rows on the opponents' boards
+     */
+    private final int boardRows;
+
     /**
      * Create a new scene, passing in the GameWindow the scene will be displayed in
      * @param gameWindow the game window
      */
     public OpponentBoardScene(GameWindow gameWindow) {
+        this(gameWindow, GameWindow.DEFAULT_BOARD_COLS, GameWindow.DEFAULT_BOARD_ROWS);
+    }
+
+    /**
+     * Create a new scene, passing in the GameWindow the scene will be displayed in and the size of the boards shown
+     * @param gameWindow the game window
+     * @param boardCols number of columns on the opponents' boards
+     * @param boardRows number of rows on the opponents' boards
+     */
+    public OpponentBoardScene(GameWindow gameWindow, int boardCols, int boardRows) {
         super(gameWindow);
+        this.boardCols = boardCols;
+        this.boardRows = boardRows;
         logger.info("Creating OpponentBoard Scene");
     }
 
@@ -120,7 +142,7 @@ public class OpponentBoardScene extends BaseScene {
         // Build the board displayer
         currentOpponentBoardContainer = new VBox();
         PieceBoard currentOpponentBoard = new PieceBoard(
-                5, 5,
+                boardCols, boardRows,
                 (double) gameWindow.getWidth() / 4,
                 (double) gameWindow.getWidth() / 4
         );
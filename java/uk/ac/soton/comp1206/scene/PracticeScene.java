@@ -0,0 +1,73 @@
+package uk.ac.soton.comp1206.scene;
+
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameHistory;
+import uk.ac.soton.comp1206.ui.GameWindow;
+
+/**
+ * A single player challenge where moves can be undone and redone as many times as the player likes.
+ * Practice games are not recorded as replays, since undoing moves means the actions no longer replay to the same game.
+ */
+public class PracticeScene extends ChallengeScene {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(PracticeScene.class);
+
+    /**
+     * Create a new practice scene
+     * @param gameWindow the Game Window
+     * @param boardCols number of columns on the game board
+     * @param boardRows number of rows on the game board
+     */
+    public PracticeScene(GameWindow gameWindow, int boardCols, int boardRows) {
+        super(gameWindow, boardCols, boardRows);
+    }
+
+    /**
+     * Creates a game that keeps its history, so moves can be undone
+     */
+    @Override
+    protected void createGameInstance() {
+        super.createGameInstance();
+        this.getGame().setReplayRecorder(null);
+        this.getGame().setHistory(new GameHistory());
+    }
+
+    /**
+     * Handles undo and redo, passing any other key on to the challenge
+     * @param keyEvent the key event generated by the pressed key
+     */
+    @Override
+    protected void handleKeyPressed(KeyEvent keyEvent) {
+        // Z and Y on their own rotate, so undo and redo need the shortcut key as well
+        if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.Z) {
+            if (keyEvent.isShiftDown()) this.redo();
+            else this.undo();
+        } else if (keyEvent.isShortcutDown() && keyEvent.getCode() == KeyCode.Y) {
+            this.redo();
+        } else if (keyEvent.getCode() == KeyCode.BACK_SPACE) {
+            this.undo();
+        } else {
+            super.handleKeyPressed(keyEvent);
+        }
+    }
+
+    /**
+     * Undoes the last move
+     */
+    private void undo() {
+        if (!this.getGame().undo()) logger.debug("Nothing to undo");
+    }
+
+    /**
+     * Redoes the last move that was undone
+     */
+    private void redo() {
+        if (!this.getGame().redo()) logger.debug("Nothing to redo");
+    }
+}
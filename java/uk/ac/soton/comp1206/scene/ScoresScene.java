@@ -17,6 +17,8 @@ import uk.ac.soton.comp1206.component.ScoresList;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.Multimedia;
 import uk.ac.soton.comp1206.game.MultiplayerGame;
+import uk.ac.soton.comp1206.game.Replay;
+import uk.ac.soton.comp1206.game.ReplayArchive;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -24,6 +26,7 @@ import java.io.*;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The scores scene which shows all of the local and online scores
@@ -129,6 +132,9 @@ public class ScoresScene extends BaseScene {
         this.loadOnlineScores();
         if (this.finishedGame instanceof MultiplayerGame) this.loadMultiplayerGameScores();
         else this.loadLocalScores(null);
+
+        // Keep the replay of the game
+        this.archiveReplay();
     }
 
     /**
@@ -250,6 +256,24 @@ public class ScoresScene extends BaseScene {
         }
     }
 
+    /**
+     * Appends the replay of the finished game to the replay archive, in the background as the game has to be played
+     * through again to take its keyframes
+     */
+    private void archiveReplay() {
+        Replay replay = this.finishedGame.getReplay();
+        if (replay == null) return;
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                int game = ReplayArchive.getInstance().append(replay);
+                logger.info("Archived replay as game {}", game);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not archive replay", e);
+            }
+        });
+    }
+
     /**
      * Loads the scores from the current multiplayer game
      */
@@ -379,7 +403,7 @@ public class ScoresScene extends BaseScene {
      * @param scores the string of scores to parse
      * @return the list of score objects
      */
-    private List<Score> parseStringScores(String scores) {
+    public static List<Score> parseStringScores(String scores) {
         String[] scoresStr = scores.substring("HISCORES ".length()).split("\n");
         List<Score> scoresArr = new ArrayList<>();
 
@@ -0,0 +1,274 @@
+package uk.ac.soton.comp1206.simulation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.RandomPieceGenerator;
+import uk.ac.soton.comp1206.solver.ExpectimaxSolver;
+import uk.ac.soton.comp1206.solver.TranspositionTable;
+import uk.ac.soton.comp1206.solver.WeightedHeuristic;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Plays a batch of complete games headlessly across all cores and reports the distribution of their results.
+ * <p>
+ * Games are split between the threads of a fork/join pool. Every game gets its own seed derived from the batch seed
+ * and its index, so any single game in a batch can be replayed exactly, and the same batch seed always gives the same
+ * results no matter how many threads are used. The games use the GameEngine scoring, so the results match the real
+ * rules.
+ * <p>
+ * Run from the command line with:
+ * <pre>
+ * BatchRunner [--games N] [--threads N] [--policy first-fit|random|greedy|lookahead|expectimax] [--seed N]
+ *             [--cols N] [--rows N] [--max-pieces N]
+ * </pre>
+ */
+public class BatchRunner {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(BatchRunner.class);
+
+    /**
+     * The fewest games a single fork/join task will play before splitting
+     */
+    private static final int MIN_GAMES_PER_TASK = 256;
+
+    /**
+     * The time the expectimax policy can take for each move in milliseconds
+     */
+    private static final long EXPECTIMAX_BUDGET = 20;
+
+    /**
+     * The size of the transposition table shared by the expectimax policies, as a power of two
+     */
+    private static final int EXPECTIMAX_TABLE_BITS = 22;
+
+    /**
+     * The number of columns in each game
+     */
+    private final int cols;
+
+    /**
+     * The number of rows in each game
+     */
+    private final int rows;
+
+    /**
+     * Creates a new policy for each task, as policies are not shared between threads
+     */
+    private final Supplier<MovePolicy> policyFactory;
+
+    /**
+     * The most pieces a game can play before it is stopped, so a policy that never loses cannot run forever
+     */
+    private final int maxPieces;
+
+    /**
+     * The seed the seed of every game is derived from
+     */
+    private final long seed;
+
+    /**
+     * Create a new batch runner
+     * @param cols number of columns in each game
+     * @param rows number of rows in each game
+     * @param policyFactory creates the policy that plays the games
+     * @param maxPieces the most pieces a game can play before it is stopped
+     * @param seed the seed for the batch
+     */
+    public BatchRunner(int cols, int rows, Supplier<MovePolicy> policyFactory, int maxPieces, long seed) {
+        this.cols = cols;
+        this.rows = rows;
+        this.policyFactory = policyFactory;
+        this.maxPieces = maxPieces;
+        this.seed = seed;
+    }
+
+    /**
+     * Play a batch of games
+     * @param games the number of games to play
+     * @param threads the number of threads to play them on
+     * @return the results of the games
+     */
+    public SimulationStats run(int games, int threads) {
+        int gamesPerTask = Math.max(MIN_GAMES_PER_TASK, games / (threads * 16));
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new GameBatch(0, games, gamesPerTask));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Get the seed of a single game in the batch
+     * @param gameIndex the index of the game in the batch
+     * @return the seed for that game's pieces and policy
+     */
+    public long getGameSeed(long gameIndex) {
+        return new RandomPieceGenerator(seed + gameIndex).nextLong();
+    }
+
+    /**
+     * Play a single game to the end, reusing the given engine
+     * @param engine the engine to play on
+     * @param policy the policy that makes the moves
+     * @param gameSeed the seed for this game
+     * @return whether the game was stopped early at the piece limit
+     */
+    private boolean playGame(GameEngine engine, MovePolicy policy, long gameSeed) {
+        engine.setPieceGenerator(new RandomPieceGenerator(gameSeed));
+        policy.startGame(gameSeed);
+        engine.start();
+
+        while (!engine.isGameOver()) {
+            if (engine.getPiecesPlayed() >= maxPieces) return true;
+
+            // If the policy cannot play, let the timer run out and lose a life
+            if (!policy.makeMove(engine)) engine.tick(engine.getTimerRemaining());
+        }
+
+        return false;
+    }
+
+    /**
+     * A fork/join task that plays a range of the games in the batch
+     */
+    @SuppressWarnings("serial")
+    private class GameBatch extends RecursiveTask<SimulationStats> {
+
+        /**
+         * The index of the first game in the range
+         */
+        private final int from;
+
+        /**
+         * The index after the last game in the range
+         */
+        private final int to;
+
+        /**
+         * The most games to play before splitting the range
+         */
+        private final int gamesPerTask;
+
+        /**
+         * Create a new task for a range of games
+         * @param from the index of the first game
+         * @param to the index after the last game
+         * @param gamesPerTask the most games to play before splitting
+         */
+        private GameBatch(int from, int to, int gamesPerTask) {
+            this.from = from;
+            this.to = to;
+            this.gamesPerTask = gamesPerTask;
+        }
+
+        /**
+         * Play the games in the range, splitting it in half if it is too large
+         * @return the results of the games
+         */
+        @Override
+        protected SimulationStats compute() {
+            if (to - from > gamesPerTask) {
+                int middle = (from + to) >>> 1;
+                GameBatch left = new GameBatch(from, middle, gamesPerTask);
+                left.fork();
+                SimulationStats right = new GameBatch(middle, to, gamesPerTask).compute();
+                return right.merge(left.join());
+            }
+
+            SimulationStats stats = new SimulationStats();
+            GameEngine engine = new GameEngine(cols, rows);
+            MovePolicy policy = policyFactory.get();
+
+            for (int i = from; i < to; i++) {
+                boolean truncated = playGame(engine, policy, getGameSeed(i));
+                stats.record(engine, truncated);
+            }
+
+            return stats;
+        }
+    }
+
+    /**
+     * Get a factory for the policy with the given name
+     * @param name the name of the policy
+     * @return the policy factory
+     */
+    public static Supplier<MovePolicy> getPolicyFactory(String name) {
+        return switch (name) {
+            case "first-fit" -> FirstFitPolicy::new;
+            case "random" -> RandomPolicy::new;
+            case "greedy" -> () -> new SolverPolicy(false);
+            case "lookahead" -> () -> new SolverPolicy(true);
+            case "expectimax" -> {
+                // Every policy in the batch shares one table, so positions seen in one game are not searched again
+                TranspositionTable table = new TranspositionTable(EXPECTIMAX_TABLE_BITS);
+                yield () -> new ExpectimaxPolicy(new ExpectimaxSolver(WeightedHeuristic.DEFAULT,
+                        ForkJoinPool.commonPool(), table), EXPECTIMAX_BUDGET);
+            }
+            default -> throw new IllegalArgumentException("Unknown policy: " + name);
+        };
+    }
+
+    /**
+     * Run a batch of games from the command line and print the results
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) {
+        int games = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String policy = "first-fit";
+        long seed = System.nanoTime();
+        int cols = 5;
+        int rows = 5;
+        int maxPieces = 10_000;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : "";
+                switch (args[i]) {
+                    case "--games" -> games = Integer.parseInt(value);
+                    case "--threads" -> threads = Integer.parseInt(value);
+                    case "--policy" -> policy = value;
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--cols" -> cols = Integer.parseInt(value);
+                    case "--rows" -> rows = Integer.parseInt(value);
+                    case "--max-pieces" -> maxPieces = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+                i++;
+            }
+
+            BatchRunner runner = new BatchRunner(cols, rows, getPolicyFactory(policy), maxPieces, seed);
+
+            logger.info("Simulating {} games on {} threads with seed {}", games, threads, seed);
+            long start = System.nanoTime();
+            SimulationStats stats = runner.run(games, threads);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("Policy %s on %dx%d, seed %d%n", policy, cols, rows, seed);
+            System.out.printf("Games:     %d in %.2fs (%.0f games/sec on %d threads)%n",
+                    stats.getGames(), seconds, stats.getGames() / seconds, threads);
+            System.out.printf("Score:     %s%n", stats.getScores());
+            System.out.printf("Level:     %s%n", stats.getLevels());
+            System.out.printf("Lines:     %s%n", stats.getLines());
+            System.out.printf("Pieces:    %s%n", stats.getPieces());
+            System.out.printf("Truncated: %d games reached %d pieces%n", stats.getTruncatedGames(), maxPieces);
+
+        } catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            System.err.println("Usage: BatchRunner [--games N] [--threads N] "
+                    + "[--policy first-fit|random|greedy|lookahead|expectimax] [--seed N] [--cols N] [--rows N] "
+                    + "[--max-pieces N]");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package uk.ac.soton.comp1206.simulation;
+
+/**
+ * Collects the distribution of a non-negative whole number over many games without keeping every value.
+ * <p>
+ * Values below 64 are counted exactly. Larger values are counted in 32 buckets per power of two, so percentiles are
+ * accurate to within about 3%. The mean, minimum and maximum are always exact. Distributions from different threads
+ * can be merged.
+ */
+public class Distribution {
+
+    /**
+     * Values below this are counted in a bucket of their own
+     */
+    private static final int EXACT_LIMIT = 64;
+
+    /**
+     * The number of buckets each power of two above the exact limit is split into
+     */
+    private static final int SUB_BUCKETS = 32;
+
+    /**
+     * The counts for each bucket
+     */
+    private final long[] counts = new long[EXACT_LIMIT + (Long.SIZE - 6) * SUB_BUCKETS];
+
+    /**
+     * The number of values recorded
+     */
+    private long count = 0;
+
+    /**
+     * The sum of the values recorded
+     */
+    private double sum = 0;
+
+    /**
+     * The sum of the squares of the values recorded
+     */
+    private double sumOfSquares = 0;
+
+    /**
+     * The smallest value recorded
+     */
+    private long min = Long.MAX_VALUE;
+
+    /**
+     * The largest value recorded
+     */
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Record a value
+     * @param value the value, negative values are counted as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        sumOfSquares += (double) value * value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all the values recorded by another distribution to this one
+     * @param other the distribution to merge in
+     */
+    public void merge(Distribution other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+
+        count += other.count;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Get the value at the given percentile. Values of 64 or more are rounded down to the start of their bucket.
+     * @param percentile the percentile, between 0 and 100
+     * @return the value at that percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(max, Math.max(min, lowerBoundOf(i)));
+        }
+
+        return max;
+    }
+
+    /**
+     * Get the number of values recorded
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the mean of the values recorded
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Get the standard deviation of the values recorded
+     * @return the standard deviation, or 0 if nothing was recorded
+     */
+    public double getStandardDeviation() {
+        if (count == 0) return 0;
+
+        double mean = getMean();
+        return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+    }
+
+    /**
+     * Get the smallest value recorded
+     * @return the minimum, or 0 if nothing was recorded
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Get the largest value recorded
+     * @return the maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * Get the bucket a value is counted in
+     * @param value the value
+     * @return the bucket index
+     */
+    private static int bucketOf(long value) {
+        if (value < EXACT_LIMIT) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - 5)) & (SUB_BUCKETS - 1);
+        return EXACT_LIMIT + (exponent - 6) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get the smallest value counted in a bucket
+     * @param bucket the bucket index
+     * @return the smallest value in that bucket
+     */
+    private static long lowerBoundOf(int bucket) {
+        if (bucket < EXACT_LIMIT) return bucket;
+
+        int exponent = (bucket - EXACT_LIMIT) / SUB_BUCKETS + 6;
+        int subBucket = (bucket - EXACT_LIMIT) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - 5);
+    }
+
+    /**
+     * Returns a one line summary of the distribution
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return String.format("mean %.2f  sd %.2f  min %d  p50 %d  p90 %d  p99 %d  max %d",
+                getMean(), getStandardDeviation(), getMin(),
+                getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+    }
+}
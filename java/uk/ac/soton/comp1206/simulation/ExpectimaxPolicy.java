@@ -0,0 +1,50 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.solver.ExpectimaxSolver;
+import uk.ac.soton.comp1206.solver.Move;
+
+/**
+ * A MovePolicy that plays the best move found by an ExpectimaxSolver within a fixed time budget
+ */
+public class ExpectimaxPolicy implements MovePolicy {
+
+    /**
+     * The solver that finds the moves
+     */
+    private final ExpectimaxSolver solver;
+
+    /**
+     * The time each move can take in milliseconds
+     */
+    private final long timeBudget;
+
+    /**
+     * Create a new expectimax policy using the default heuristic
+     * @param timeBudget the time each move can take in milliseconds
+     */
+    public ExpectimaxPolicy(long timeBudget) {
+        this(new ExpectimaxSolver(), timeBudget);
+    }
+
+    /**
+     * Create a new expectimax policy
+     * @param solver the solver that finds the moves
+     * @param timeBudget the time each move can take in milliseconds
+     */
+    public ExpectimaxPolicy(ExpectimaxSolver solver, long timeBudget) {
+        this.solver = solver;
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Play the best move found by the solver
+     * @param engine the game to play
+     * @return whether a piece was played
+     */
+    @Override
+    public boolean makeMove(GameEngine engine) {
+        Move move = solver.findBestMove(engine, timeBudget);
+        return move != null && move.apply(engine);
+    }
+}
@@ -0,0 +1,41 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * A MovePolicy that plays the current piece at the first place it fits, trying each distinct rotation in turn and
+ * scanning the grid from the top left
+ */
+public class FirstFitPolicy implements MovePolicy {
+
+    /**
+     * Play the current piece at the first place it fits
+     * @param engine the game to play
+     * @return whether a piece was played
+     */
+    @Override
+    public boolean makeMove(GameEngine engine) {
+        Grid grid = engine.getGrid();
+        GamePiece piece = engine.getCurrentPiece();
+        GamePiece.GamePieceType type = piece.getType();
+
+        long[] placements = new long[grid.getRows()];
+
+        for (int rotation = 0; rotation < type.getDistinctOrientations(); rotation++) {
+            grid.legalShapePlacements(type.getOrientation(rotation), placements);
+
+            // The first row with a legal centre, at its lowest column
+            for (int y = 0; y < grid.getRows(); y++) {
+                if (placements[y] == 0) continue;
+
+                int x = Long.numberOfTrailingZeros(placements[y]);
+                engine.rotateCurrentPiece(rotation - piece.getRotation());
+                return engine.blockClicked(x, y);
+            }
+        }
+
+        return false;
+    }
+}
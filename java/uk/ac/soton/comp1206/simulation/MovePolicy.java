@@ -0,0 +1,23 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * A MovePolicy decides what to do on each turn of a headless game, for example which rotation and position to play
+ * the current piece at, or whether to swap it.
+ */
+public interface MovePolicy {
+
+    /**
+     * Called before each game starts, so a policy with random choices can make them reproducible
+     * @param seed the seed for this game
+     */
+    default void startGame(long seed) {}
+
+    /**
+     * Make one move in the given game
+     * @param engine the game to play
+     * @return whether a piece was played. If not, the game loop timer is left to run out
+     */
+    boolean makeMove(GameEngine engine);
+}
@@ -0,0 +1,64 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+
+/**
+ * A MovePolicy that plays the current piece at a random place where it fits. It picks a random rotation and starting
+ * cell, then scans forward from there until the piece fits.
+ */
+public class RandomPolicy implements MovePolicy {
+
+    /**
+     * The random number generator for the current game
+     */
+    private SplittableRandom random = new SplittableRandom();
+
+    /**
+     * Reseed the random number generator for the next game
+     * @param seed the seed for this game
+     */
+    @Override
+    public void startGame(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Play the current piece at a random place where it fits
+     * @param engine the game to play
+     * @return whether a piece was played
+     */
+    @Override
+    public boolean makeMove(GameEngine engine) {
+        Grid grid = engine.getGrid();
+        GamePiece piece = engine.getCurrentPiece();
+        GamePiece.GamePieceType type = piece.getType();
+
+        int cells = grid.getCols() * grid.getRows();
+        int orientations = type.getDistinctOrientations();
+        int startRotation = random.nextInt(orientations);
+        int startCell = random.nextInt(cells);
+
+        for (int r = 0; r < orientations; r++) {
+            int rotation = (startRotation + r) % orientations;
+            int shape = type.getOrientation(rotation);
+
+            for (int c = 0; c < cells; c++) {
+                int cell = (startCell + c) % cells;
+                int x = cell % grid.getCols();
+                int y = cell / grid.getCols();
+
+                // canPlayShape takes the top left of the piece, while blockClicked takes its centre
+                if (grid.canPlayShape(shape, x - 1, y - 1)) {
+                    engine.rotateCurrentPiece(rotation - piece.getRotation());
+                    return engine.blockClicked(x, y);
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * The results of a batch of simulated games: the distributions of score, level, lines cleared and pieces played
+ */
+public class SimulationStats {
+
+    /**
+     * The distribution of final scores
+     */
+    private final Distribution scores = new Distribution();
+
+    /**
+     * The distribution of final levels
+     */
+    private final Distribution levels = new Distribution();
+
+    /**
+     * The distribution of lines cleared per game
+     */
+    private final Distribution lines = new Distribution();
+
+    /**
+     * The distribution of pieces played per game
+     */
+    private final Distribution pieces = new Distribution();
+
+    /**
+     * The number of games stopped early because they reached the piece limit
+     */
+    private long truncatedGames = 0;
+
+    /**
+     * Record the result of a finished game
+     * @param engine the finished game
+     * @param truncated whether the game was stopped early at the piece limit
+     */
+    public void record(GameEngine engine, boolean truncated) {
+        scores.record(engine.getScore());
+        levels.record(engine.getLevel());
+        lines.record(engine.getLinesCleared());
+        pieces.record(engine.getPiecesPlayed());
+        if (truncated) truncatedGames++;
+    }
+
+    /**
+     * Add all the games recorded by another set of stats to this one
+     * @param other the stats to merge in
+     * @return this, so merges can be chained
+     */
+    public SimulationStats merge(SimulationStats other) {
+        scores.merge(other.scores);
+        levels.merge(other.levels);
+        lines.merge(other.lines);
+        pieces.merge(other.pieces);
+        truncatedGames += other.truncatedGames;
+        return this;
+    }
+
+    /**
+     * Get the number of games recorded
+     * @return the number of games
+     */
+    public long getGames() {
+        return scores.getCount();
+    }
+
+    /**
+     * Get the distribution of final scores
+     * @return the score distribution
+     */
+    public Distribution getScores() {
+        return scores;
+    }
+
+    /**
+     * Get the distribution of final levels
+     * @return the level distribution
+     */
+    public Distribution getLevels() {
+        return levels;
+    }
+
+    /**
+     * Get the distribution of lines cleared per game
+     * @return the lines cleared distribution
+     */
+    public Distribution getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the distribution of pieces played per game
+     * @return the pieces played distribution
+     */
+    public Distribution getPieces() {
+        return pieces;
+    }
+
+    /**
+     * Get the number of games stopped early because they reached the piece limit
+     * @return the number of truncated games
+     */
+    public long getTruncatedGames() {
+        return truncatedGames;
+    }
+}
@@ -0,0 +1,50 @@
+package uk.ac.soton.comp1206.simulation;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.solver.Move;
+import uk.ac.soton.comp1206.solver.Solver;
+
+/**
+ * A MovePolicy that plays the best move found by a Solver
+ */
+public class SolverPolicy implements MovePolicy {
+
+    /**
+     * The solver that finds the moves
+     */
+    private final Solver solver;
+
+    /**
+     * Whether the solver looks ahead to the following piece
+     */
+    private final boolean lookahead;
+
+    /**
+     * Create a new solver policy using the default heuristic
+     * @param lookahead whether the solver looks ahead to the following piece
+     */
+    public SolverPolicy(boolean lookahead) {
+        this(new Solver(), lookahead);
+    }
+
+    /**
+     * Create a new solver policy
+     * @param solver the solver that finds the moves
+     * @param lookahead whether the solver looks ahead to the following piece
+     */
+    public SolverPolicy(Solver solver, boolean lookahead) {
+        this.solver = solver;
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Play the best move found by the solver
+     * @param engine the game to play
+     * @return whether a piece was played
+     */
+    @Override
+    public boolean makeMove(GameEngine engine) {
+        Move move = solver.findBestMove(engine, lookahead, true);
+        return move != null && move.apply(engine);
+    }
+}
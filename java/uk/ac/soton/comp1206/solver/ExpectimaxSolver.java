@@ -0,0 +1,649 @@
+package uk.ac.soton.comp1206.solver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.Zobrist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The ExpectimaxSolver looks several pieces ahead to find the best move for the current piece of a game.
+ * <p>
+ * The search alternates between two kinds of node. At a move node both known pieces can be played, as the player can
+ * swap the current and following pieces first, and the best placement is taken. Whichever piece was not played is
+ * then kept, and a chance node averages over every piece that could be spawned next, as new pieces are drawn
+ * uniformly from all {@link GamePiece#PIECES} types. The boards at the bottom of the search are scored by a Heuristic,
+ * along with the score and lines gained on the way down.
+ * <p>
+ * The search is run with iterative deepening against a time budget. Each depth is searched in full, and the move from
+ * the deepest completed search is returned, so a move is always ready by the deadline. Chance nodes near the top of
+ * the tree are split into tasks on a work stealing fork/join pool.
+ * <p>
+ * The values of chance nodes are kept in a TranspositionTable, as the same board is often reached by playing the
+ * same pieces in a different order. Entries are keyed on the number of pieces left to play as well as the board, as
+ * the value depends on how much deeper the search goes, so a depth only finds entries for positions it reaches with
+ * the same number of pieces left. The table carries over between searches, and can be shared with other solvers.
+ * <p>
+ * A search should only be run from one thread at a time.
+ */
+public class ExpectimaxSolver {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(ExpectimaxSolver.class);
+
+    /**
+     * The deepest search that will be tried, counted in pieces played
+     */
+    public static final int MAX_DEPTH = 8;
+
+    /**
+     * Chance nodes with at least this many pieces left to play below them are split into parallel tasks
+     */
+    private static final int PARALLEL_DEPTH = 2;
+
+    /**
+     * How many placements are tried between checks of the clock
+     */
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    /**
+     * The size of the transposition table made when none is given, as a power of two
+     */
+    private static final int DEFAULT_TABLE_BITS = 18;
+
+    /**
+     * The value taken off when a piece cannot be played anywhere, as it costs a life
+     */
+    private static final double NO_MOVE_PENALTY = Solver.NO_MOVE_PENALTY;
+
+    /**
+     * The heuristic used to score the boards at the bottom of the search
+     */
+    private final Heuristic heuristic;
+
+    /**
+     * The pool the chance nodes are split across
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The table the values of chance nodes are kept in
+     */
+    private final TranspositionTable table;
+
+    /**
+     * The time the current search has to finish by, from System.nanoTime
+     */
+    private volatile long deadline;
+
+    /**
+     * Whether the current depth has a deadline at all, as the first depth is always searched in full
+     */
+    private volatile boolean hasDeadline;
+
+    /**
+     * Whether the current depth ran out of time and should be thrown away
+     */
+    private volatile boolean timedOut;
+
+    /**
+     * The depth of the last completed search
+     */
+    private int lastDepth;
+
+    /**
+     * Create a new solver using the default heuristic, the common fork/join pool and its own transposition table
+     */
+    public ExpectimaxSolver() {
+        this(WeightedHeuristic.DEFAULT, ForkJoinPool.commonPool(), new TranspositionTable(DEFAULT_TABLE_BITS));
+    }
+
+    /**
+     * Create a new solver
+     * @param heuristic the heuristic used to score the boards at the bottom of the search
+     * @param pool the pool the chance nodes are split across
+     * @param table the table the values of chance nodes are kept in, which can be shared with other solvers using the
+     *              same heuristic
+     */
+    public ExpectimaxSolver(Heuristic heuristic, ForkJoinPool pool, TranspositionTable table) {
+        this.heuristic = heuristic;
+        this.pool = pool;
+        this.table = table;
+    }
+
+    /**
+     * Find the best move for the current piece, searching as deep as the time budget allows
+     * @param engine the game to find a move for
+     * @param timeBudget the time the search can take in milliseconds
+     * @return the best move, or null if neither known piece can be played anywhere
+     */
+    public Move findBestMove(GameEngine engine, long timeBudget) {
+        return findBestMove(engine, timeBudget, MAX_DEPTH);
+    }
+
+    /**
+     * Find the best move for the current piece, searching as deep as the time budget allows. The first depth is
+     * always searched in full, even if it takes longer than the budget.
+     * @param engine the game to find a move for
+     * @param timeBudget the time the search can take in milliseconds
+     * @param maxDepth the deepest search to try, counted in pieces played
+     * @return the best move, or null if neither known piece can be played anywhere
+     */
+    public Move findBestMove(GameEngine engine, long timeBudget, int maxDepth) {
+        GamePiece current = engine.getCurrentPiece();
+        GamePiece following = engine.getFollowingPiece();
+        if (current == null || following == null) return null;
+
+        Grid grid = engine.getGrid();
+        SearchBoard root = new SearchBoard(grid.getCols(), grid.getRows());
+        root.copyFrom(grid);
+
+        long start = System.nanoTime();
+        Move best = null;
+        lastDepth = 0;
+        table.newSearch();
+
+        for (int depth = 1; depth <= Math.min(maxDepth, MAX_DEPTH); depth++) {
+            // The first depth has no deadline so there is always a move to return
+            hasDeadline = depth > 1;
+            deadline = start + timeBudget * 1_000_000L;
+            timedOut = false;
+
+            Move move = searchRoot(root, current.getType(), following.getType(), engine.getMultiplier(), depth);
+            if (timedOut) break;
+
+            best = move;
+            lastDepth = depth;
+            if (move == null) break;
+        }
+
+        logger.trace("Searched {} pieces deep in {}ms: {}", lastDepth, (System.nanoTime() - start) / 1_000_000, best);
+        logger.trace("{}", table);
+        return best;
+    }
+
+    /**
+     * Get the depth of the last completed search, counted in pieces played
+     * @return the depth
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     * Get the table the values of chance nodes are kept in
+     * @return the transposition table
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Search every move from the root to a fixed depth
+     * @param root the board being searched from
+     * @param current the current piece
+     * @param following the following piece
+     * @param multiplier the multiplier before the move
+     * @param depth the number of pieces to play
+     * @return the best move, or null if neither piece can be played anywhere
+     */
+    private Move searchRoot(SearchBoard root, GamePiece.GamePieceType current, GamePiece.GamePieceType following,
+                            int multiplier, int depth) {
+        List<RootMove> moves = new ArrayList<>();
+        addRootMoves(moves, root, current, following, false, multiplier, depth);
+
+        // Swapping to the same type of piece cannot change anything
+        if (following != current) addRootMoves(moves, root, following, current, true, multiplier, depth);
+
+        if (moves.isEmpty()) return null;
+
+        pool.invoke(new RootSearch(moves));
+
+        RootMove best = null;
+        for (RootMove move : moves) {
+            if (best == null || move.value > best.value) best = move;
+        }
+
+        return new Move(best.swap, best.rotation, best.x, best.y, best.value);
+    }
+
+    /**
+     * Add every placement of a piece on the root board to the list of root moves
+     * @param moves the list of root moves
+     * @param root the board being searched from
+     * @param played the piece to play
+     * @param kept the piece that is kept for the next move
+     * @param swap whether the pieces are swapped to play this piece
+     * @param multiplier the multiplier before the move
+     * @param depth the number of pieces to play
+     */
+    private void addRootMoves(List<RootMove> moves, SearchBoard root, GamePiece.GamePieceType played,
+                              GamePiece.GamePieceType kept, boolean swap, int multiplier, int depth) {
+        long[] placements = new long[root.getRows()];
+
+        for (int rotation = 0; rotation < played.getDistinctOrientations(); rotation++) {
+            int shape = played.getOrientation(rotation);
+            root.legalPlacements(shape, placements);
+
+            for (int y = 0; y < root.getRows(); y++) {
+                for (long centres = placements[y]; centres != 0; centres &= centres - 1) {
+                    int x = Long.numberOfTrailingZeros(centres);
+                    moves.add(new RootMove(root, shape, kept, swap, rotation, x, y, multiplier, depth));
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the value of the best placement of either known piece
+     * @param context the scratch boards of the task
+     * @param ply the index of the board to search from
+     * @param current the current piece
+     * @param following the following piece
+     * @param multiplier the multiplier before the move
+     * @param depth the number of pieces left to play, at least 1
+     * @param lines the lines cleared so far
+     * @param score the score gained so far
+     * @return the value of the best placement
+     */
+    private double searchMove(SearchContext context, int ply, GamePiece.GamePieceType current,
+                              GamePiece.GamePieceType following, int multiplier, int depth, int lines, int score) {
+        double best = searchPlacements(context, ply, current, following, multiplier, depth, lines, score);
+        if (following != current) {
+            best = Math.max(best, searchPlacements(context, ply, following, current, multiplier, depth, lines, score));
+        }
+
+        // Neither piece could go anywhere, so a life would be lost
+        if (best == Double.NEGATIVE_INFINITY) {
+            best = heuristic.evaluate(context.boards[ply], lines, score, 1) - NO_MOVE_PENALTY;
+        }
+
+        return best;
+    }
+
+    /**
+     * Find the value of the best placement of one piece
+     * @param context the scratch boards of the task
+     * @param ply the index of the board to search from
+     * @param played the piece to play
+     * @param kept the piece that is kept for the next move
+     * @param multiplier the multiplier before the move
+     * @param depth the number of pieces left to play, at least 1
+     * @param lines the lines cleared so far
+     * @param score the score gained so far
+     * @return the value of the best placement, or negative infinity if the piece cannot be played
+     */
+    private double searchPlacements(SearchContext context, int ply, GamePiece.GamePieceType played,
+                                    GamePiece.GamePieceType kept, int multiplier, int depth, int lines, int score) {
+        SearchBoard board = context.boards[ply];
+        SearchBoard next = context.boards[ply + 1];
+        long[] placements = context.placements[ply];
+        double best = Double.NEGATIVE_INFINITY;
+
+        for (int rotation = 0; rotation < played.getDistinctOrientations(); rotation++) {
+            int shape = played.getOrientation(rotation);
+            board.legalPlacements(shape, placements);
+
+            for (int y = 0; y < board.getRows(); y++) {
+                for (long centres = placements[y]; centres != 0; centres &= centres - 1) {
+                    if (context.checkClock()) return best;
+
+                    // Placements are found by the centre of the piece, while the board takes its top left
+                    int x = Long.numberOfTrailingZeros(centres);
+                    next.copyFrom(board);
+                    int linesCleared = next.play(shape, x - 1, y - 1);
+                    int scoreGained = GameEngine.getScoreFor(linesCleared, next.getClearedBlocks(), multiplier);
+                    int newMultiplier = GameEngine.getNextMultiplier(multiplier, linesCleared > 0);
+
+                    double value = searchAfter(context, ply + 1, kept, newMultiplier, depth - 1,
+                            lines + linesCleared, score + scoreGained);
+                    if (value > best) best = value;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Find the value of a board after a piece has been played. This is either a leaf scored by the heuristic, or a
+     * chance node, which is looked up in the transposition table before it is searched.
+     * @param context the scratch boards of the task
+     * @param ply the index of the board after the piece was played
+     * @param kept the piece that was kept, which becomes the current piece
+     * @param multiplier the multiplier after the piece was played
+     * @param depth the number of pieces left to play
+     * @param lines the lines cleared so far
+     * @param score the score gained so far
+     * @return the value of the board
+     */
+    private double searchAfter(SearchContext context, int ply, GamePiece.GamePieceType kept, int multiplier,
+                               int depth, int lines, int score) {
+        if (depth == 0) return heuristic.evaluate(context.boards[ply], lines, score, multiplier);
+
+        // The value depends on the board, the kept piece and everything passed down to the heuristic
+        long key = context.boards[ply].getHash() ^ Zobrist.piece(kept) ^ stateKey(multiplier, depth, lines, score);
+        double stored = table.probe(key);
+        if (!Double.isNaN(stored)) return stored;
+
+        double value = searchChance(context, ply, kept, multiplier, depth, lines, score);
+
+        // A value from a search that ran out of time is incomplete, so it is not kept
+        if (!timedOut) table.store(key, depth, value);
+        return value;
+    }
+
+    /**
+     * Average the best move over every piece that could be spawned next
+     * @param context the scratch boards of the task
+     * @param ply the index of the board after the piece was played
+     * @param kept the piece that was kept, which becomes the current piece
+     * @param multiplier the multiplier after the piece was played
+     * @param depth the number of pieces left to play, at least 1
+     * @param lines the lines cleared so far
+     * @param score the score gained so far
+     * @return the average value
+     */
+    private double searchChance(SearchContext context, int ply, GamePiece.GamePieceType kept, int multiplier,
+                                int depth, int lines, int score) {
+        // Split the chance node into a task for each piece near the top of the tree
+        if (depth >= PARALLEL_DEPTH) {
+            List<ChanceSearch> tasks = new ArrayList<>(GamePiece.PIECES);
+            for (int i = 0; i < GamePiece.PIECES; i++) {
+                tasks.add(new ChanceSearch(context.boards[ply], kept, GamePiece.GamePieceType.fromIndex(i),
+                        multiplier, depth, lines, score));
+            }
+
+            double total = 0;
+            for (ChanceSearch task : ForkJoinTask.invokeAll(tasks)) {
+                total += task.join();
+            }
+
+            return total / GamePiece.PIECES;
+        }
+
+        double total = 0;
+        for (int i = 0; i < GamePiece.PIECES; i++) {
+            total += searchMove(context, ply, kept, GamePiece.GamePieceType.fromIndex(i), multiplier, depth, lines,
+                    score);
+        }
+
+        return total / GamePiece.PIECES;
+    }
+
+    /**
+     * Get a key for the state of a chance node other than its board and kept piece
+     * @param multiplier the multiplier
+     * @param depth the number of pieces left to play
+     * @param lines the lines cleared so far
+     * @param score the score gained so far
+     * @return the key
+     */
+    private static long stateKey(int multiplier, int depth, int lines, int score) {
+        long z = ((long) multiplier << 48) ^ ((long) depth << 40) ^ ((long) lines << 32) ^ (score & 0xFFFFFFFFL);
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * The scratch boards used by one task, one for each piece played below it. Tasks never share their boards, as a
+     * fork/join thread can run another task while it waits for its own.
+     */
+    private class SearchContext {
+
+        /**
+         * The boards, where the board at index i is the board after i pieces have been played
+         */
+        private final SearchBoard[] boards;
+
+        /**
+         * The legal centres of the piece being tried on each board
+         */
+        private final long[][] placements;
+
+        /**
+         * The placements tried since the clock was last checked
+         */
+        private int sinceClockCheck;
+
+        /**
+         * Create a new set of scratch boards, starting from a copy of the given board
+         * @param start the board to start from
+         * @param depth the number of pieces that can be played
+         */
+        private SearchContext(SearchBoard start, int depth) {
+            boards = new SearchBoard[depth + 1];
+            for (int i = 0; i <= depth; i++) {
+                boards[i] = new SearchBoard(start.getCols(), start.getRows());
+            }
+            boards[0].copyFrom(start);
+            placements = new long[depth + 1][start.getRows()];
+        }
+
+        /**
+         * Check whether the search has run out of time, only looking at the clock every so often
+         * @return whether the search should stop
+         */
+        private boolean checkClock() {
+            if (timedOut) return true;
+            if (!hasDeadline) return false;
+            if (++sinceClockCheck < CLOCK_CHECK_INTERVAL) return false;
+
+            sinceClockCheck = 0;
+            if (System.nanoTime() - deadline > 0) timedOut = true;
+            return timedOut;
+        }
+    }
+
+    /**
+     * A move from the root, along with the value found for it
+     */
+    @SuppressWarnings("serial")
+    private class RootMove extends RecursiveTask<Double> {
+
+        /**
+         * The board before the move, which is shared by every root move and never changed
+         */
+        private final SearchBoard board;
+
+        /**
+         * The shape of the piece played
+         */
+        private final int shape;
+
+        /**
+         * The piece kept for the next move
+         */
+        private final GamePiece.GamePieceType kept;
+
+        /**
+         * Whether the pieces are swapped first
+         */
+        private final boolean swap;
+
+        /**
+         * The rotation of the piece played
+         */
+        private final int rotation;
+
+        /**
+         * The column of the centre of the piece
+         */
+        private final int x;
+
+        /**
+         * The row of the centre of the piece
+         */
+        private final int y;
+
+        /**
+         * The multiplier before the move
+         */
+        private final int multiplier;
+
+        /**
+         * The number of pieces to play, including this one
+         */
+        private final int depth;
+
+        /**
+         * The value found for the move
+         */
+        private double value;
+
+        /**
+         * Create a new root move
+         * @param board the board before the move
+         * @param shape the shape of the piece played
+         * @param kept the piece kept for the next move
+         * @param swap whether the pieces are swapped first
+         * @param rotation the rotation of the piece played
+         * @param x column of the centre of the piece
+         * @param y row of the centre of the piece
+         * @param multiplier the multiplier before the move
+         * @param depth the number of pieces to play, including this one
+         */
+        private RootMove(SearchBoard board, int shape, GamePiece.GamePieceType kept, boolean swap, int rotation,
+                         int x, int y, int multiplier, int depth) {
+            this.board = board;
+            this.shape = shape;
+            this.kept = kept;
+            this.swap = swap;
+            this.rotation = rotation;
+            this.x = x;
+            this.y = y;
+            this.multiplier = multiplier;
+            this.depth = depth;
+        }
+
+        /**
+         * Play the move and search the board it leaves
+         * @return the value of the move
+         */
+        @Override
+        protected Double compute() {
+            SearchContext context = new SearchContext(board, depth);
+            context.boards[1].copyFrom(board);
+
+            int lines = context.boards[1].play(shape, x - 1, y - 1);
+            int scoreGained = GameEngine.getScoreFor(lines, context.boards[1].getClearedBlocks(), multiplier);
+            int newMultiplier = GameEngine.getNextMultiplier(multiplier, lines > 0);
+
+            value = searchAfter(context, 1, kept, newMultiplier, depth - 1, lines, scoreGained);
+            return value;
+        }
+    }
+
+    /**
+     * A task that searches every root move
+     */
+    @SuppressWarnings("serial")
+    private static class RootSearch extends RecursiveTask<Void> {
+
+        /**
+         * The root moves to search
+         */
+        private final List<RootMove> moves;
+
+        /**
+         * Create a new root search
+         * @param moves the root moves to search
+         */
+        private RootSearch(List<RootMove> moves) {
+            this.moves = moves;
+        }
+
+        /**
+         * Search every root move in parallel
+         * @return nothing
+         */
+        @Override
+        protected Void compute() {
+            ForkJoinTask.invokeAll(moves);
+            return null;
+        }
+    }
+
+    /**
+     * A task that searches one outcome of a chance node, where a given piece is spawned next
+     */
+    @SuppressWarnings("serial")
+    private class ChanceSearch extends RecursiveTask<Double> {
+
+        /**
+         * The board at the chance node
+         */
+        private final SearchBoard board;
+
+        /**
+         * The piece that was kept, which becomes the current piece
+         */
+        private final GamePiece.GamePieceType current;
+
+        /**
+         * The piece that was spawned, which becomes the following piece
+         */
+        private final GamePiece.GamePieceType following;
+
+        /**
+         * The multiplier at the chance node
+         */
+        private final int multiplier;
+
+        /**
+         * The number of pieces left to play
+         */
+        private final int depth;
+
+        /**
+         * The lines cleared so far
+         */
+        private final int lines;
+
+        /**
+         * The score gained so far
+         */
+        private final int score;
+
+        /**
+         * Create a new chance search
+         * @param board the board at the chance node, which is copied when the task runs
+         * @param current the piece that was kept
+         * @param following the piece that was spawned
+         * @param multiplier the multiplier at the chance node
+         * @param depth the number of pieces left to play
+         * @param lines the lines cleared so far
+         * @param score the score gained so far
+         */
+        private ChanceSearch(SearchBoard board, GamePiece.GamePieceType current, GamePiece.GamePieceType following,
+                             int multiplier, int depth, int lines, int score) {
+            this.board = board;
+            this.current = current;
+            this.following = following;
+            this.multiplier = multiplier;
+            this.depth = depth;
+            this.lines = lines;
+            this.score = score;
+        }
+
+        /**
+         * Search the best move with the known pieces
+         * @return the value of the best move
+         */
+        @Override
+        protected Double compute() {
+            SearchContext context = new SearchContext(board, depth);
+            return searchMove(context, 0, current, following, multiplier, depth, lines, score);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.solver;
+
+/**
+ * The Heuristic is used by the Solver to score the board a move leaves behind. Higher values are better.
+ */
+@FunctionalInterface
+public interface Heuristic {
+
+    /**
+     * Score the board left after a move
+     * @param board the board after the move, with any lines cleared
+     * @param linesCleared the number of lines the move cleared
+     * @param scoreGained the score the move added
+     * @param multiplier the multiplier after the move
+     * @return the value of the move
+     */
+    double evaluate(SearchBoard board, int linesCleared, int scoreGained, int multiplier);
+}
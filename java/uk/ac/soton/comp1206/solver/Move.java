@@ -0,0 +1,110 @@
+package uk.ac.soton.comp1206.solver;
+
+import uk.ac.soton.comp1206.game.GameEngine;
+
+/**
+ * A move chosen by the Solver: whether to swap pieces first, which rotation to play the piece at and where to play it
+ */
+public class Move {
+
+    /**
+     * Whether the current and following pieces are swapped before playing
+     */
+    private final boolean swap;
+
+    /**
+     * The rotation to play the piece at
+     */
+    private final int rotation;
+
+    /**
+     * The column of the centre of the piece
+     */
+    private final int x;
+
+    /**
+     * The row of the centre of the piece
+     */
+    private final int y;
+
+    /**
+     * The value the Solver gave this move
+     */
+    private final double value;
+
+    /**
+     * Create a new move
+     * @param swap whether to swap pieces before playing
+     * @param rotation the rotation to play the piece at
+     * @param x column of the centre of the piece
+     * @param y row of the centre of the piece
+     * @param value the value the Solver gave this move
+     */
+    public Move(boolean swap, int rotation, int x, int y, double value) {
+        this.swap = swap;
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+        this.value = value;
+    }
+
+    /**
+     * Play this move on a game, in the same way as a player would
+     * @param engine the game to play on
+     * @return whether the piece was played
+     */
+    public boolean apply(GameEngine engine) {
+        if (swap) engine.swapCurrentPiece();
+        engine.rotateCurrentPiece(rotation - engine.getCurrentPiece().getRotation());
+        return engine.blockClicked(x, y);
+    }
+
+    /**
+     * Get whether the pieces are swapped before playing
+     * @return whether to swap
+     */
+    public boolean isSwap() {
+        return swap;
+    }
+
+    /**
+     * Get the rotation to play the piece at
+     * @return the rotation
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the column of the centre of the piece
+     * @return the column
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the row of the centre of the piece
+     * @return the row
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the value the Solver gave this move
+     * @return the value
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Transforms the move into a string for debugging
+     * @return the move string
+     */
+    @Override
+    public String toString() {
+        return String.format("Move(%s rotation %d at %d,%d value %.1f)", swap ? "swap," : "", rotation, x, y, value);
+    }
+}
@@ -0,0 +1,222 @@
+package uk.ac.soton.comp1206.solver;
+
+import uk.ac.soton.comp1206.game.BitBoard;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.Zobrist;
+
+/**
+ * A scratch copy of a grid's occupancy that the solver plays moves on. It only holds which blocks are filled, not
+ * their colours, and none of its methods allocate, so a search can try out millions of moves without creating any
+ * garbage.
+ * <p>
+ * The board keeps the same Zobrist hash as a Grid with the same blocks filled, so searches can look up boards they
+ * have already scored.
+ */
+public class SearchBoard {
+
+    /**
+     * The number of columns on the board
+     */
+    private final int cols;
+
+    /**
+     * The number of rows on the board
+     */
+    private final int rows;
+
+    /**
+     * The bitboard word of a completely filled row
+     */
+    private final long fullRow;
+
+    /**
+     * The occupancy bitboard, one word per row with bit x set when the block in column x is filled
+     */
+    private final long[] occupancy;
+
+    /**
+     * The Zobrist hash of the filled blocks
+     */
+    private long hash;
+
+    /**
+     * The number of blocks removed by the last call to play
+     */
+    private int clearedBlocks;
+
+    /**
+     * Create a new empty board
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public SearchBoard(int cols, int rows) {
+        if (cols < 1 || cols > Grid.MAX_COLS || rows < 1 || rows > Grid.MAX_ROWS)
+            throw new IllegalArgumentException("Invalid board size: " + cols + "x" + rows);
+
+        this.cols = cols;
+        this.rows = rows;
+        this.fullRow = BitBoard.fullRowMask(cols);
+        this.occupancy = new long[rows];
+    }
+
+    /**
+     * Copy the occupancy of a grid of the same size onto this board
+     * @param grid the grid to copy
+     */
+    public void copyFrom(Grid grid) {
+        for (int y = 0; y < rows; y++) {
+            occupancy[y] = grid.getRowOccupancy(y);
+        }
+        hash = grid.getHash();
+    }
+
+    /**
+     * Copy another board of the same size onto this board
+     * @param board the board to copy
+     */
+    public void copyFrom(SearchBoard board) {
+        System.arraycopy(board.occupancy, 0, occupancy, 0, rows);
+        hash = board.hash;
+    }
+
+    /**
+     * Get whether a piece shape fits on the board, with its top left block at x and y
+     * @param shape the shape mask of the piece
+     * @param x column
+     * @param y row
+     * @return whether the shape fits at the given coordinates or not
+     */
+    public boolean fits(int shape, int x, int y) {
+        return BitBoard.fits(occupancy, cols, rows, shape, x, y);
+    }
+
+    /**
+     * Find every place a piece shape fits on the board, by the centre of the piece
+     * @param shape the shape mask of the piece
+     * @param placements filled with one word per row, with bit x set when the shape fits centred on column x
+     */
+    public void legalPlacements(int shape, long[] placements) {
+        BitBoard.legalCentres(occupancy, cols, rows, shape, placements);
+    }
+
+    /**
+     * Place a piece shape on the board and clear any lines it completes. The shape must fit.
+     * @param shape the shape mask of the piece
+     * @param x column of the top left block
+     * @param y row of the top left block
+     * @return the number of lines cleared
+     */
+    public int play(int shape, int x, int y) {
+        BitBoard.place(occupancy, shape, x, y);
+        for (int yPiece = 0; yPiece < 3; yPiece++) {
+            int rowMask = (shape >>> (yPiece * 3)) & 0b111;
+            if (rowMask != 0) hash ^= Zobrist.row(BitBoard.shiftRow(rowMask, x), y + yPiece);
+        }
+
+        // Only the rows the piece covered can have become full, so they are kept as a mask relative to y
+        int fullRows = 0;
+        for (int yPiece = 0; yPiece < 3; yPiece++) {
+            if (((shape >>> (yPiece * 3)) & 0b111) == 0) continue;
+            if (occupancy[y + yPiece] == fullRow) fullRows |= 1 << yPiece;
+        }
+
+        // A column is full when its bit is set in every row, and only the columns the piece covered can have changed
+        int columnsCovered = (shape | (shape >>> 3) | (shape >>> 6)) & 0b111;
+        long fullColumns = BitBoard.shiftRow(columnsCovered, x) & fullRow;
+        for (int yGrid = 0; yGrid < rows && fullColumns != 0; yGrid++) {
+            fullColumns &= occupancy[yGrid];
+        }
+
+        int rowsCleared = Integer.bitCount(fullRows);
+        int columnsCleared = Long.bitCount(fullColumns);
+        clearedBlocks = rowsCleared * cols + columnsCleared * rows - rowsCleared * columnsCleared;
+        if (rowsCleared + columnsCleared == 0) return 0;
+
+        // Remove the cleared blocks, taking each one out of the hash
+        if (fullColumns != 0) {
+            for (int yGrid = 0; yGrid < rows; yGrid++) {
+                hash ^= Zobrist.row(fullColumns, yGrid);
+                occupancy[yGrid] &= ~fullColumns;
+            }
+        }
+        for (int yPiece = 0; yPiece < 3; yPiece++) {
+            if ((fullRows & (1 << yPiece)) == 0) continue;
+
+            hash ^= Zobrist.row(occupancy[y + yPiece], y + yPiece);
+            occupancy[y + yPiece] = 0;
+        }
+
+        return rowsCleared + columnsCleared;
+    }
+
+    /**
+     * Get the number of blocks removed by the last call to play
+     * @return the number of blocks cleared
+     */
+    public int getClearedBlocks() {
+        return clearedBlocks;
+    }
+
+    /**
+     * Get the Zobrist hash of the filled blocks
+     * @return the hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Count the holes on the board. A hole is an empty block with filled blocks or the edge of the board on all four
+     * sides, so only a Dot piece can ever fill it. Each row is checked against its neighbours with a few shifts.
+     * @return the number of holes
+     */
+    public int countHoles() {
+        int holes = 0;
+        long leftWall = 1L;
+        long rightWall = 1L << (cols - 1);
+
+        for (int y = 0; y < rows; y++) {
+            long row = occupancy[y];
+            long empty = ~row & fullRow;
+            if (empty == 0) continue;
+
+            long left = (row << 1) | leftWall;
+            long right = (row >>> 1) | rightWall;
+            long above = y == 0 ? fullRow : occupancy[y - 1];
+            long below = y == rows - 1 ? fullRow : occupancy[y + 1];
+
+            holes += Long.bitCount(empty & left & right & above & below);
+        }
+
+        return holes;
+    }
+
+    /**
+     * Count the filled blocks on the board
+     * @return the number of filled blocks
+     */
+    public int countFilled() {
+        int filled = 0;
+        for (int y = 0; y < rows; y++) {
+            filled += Long.bitCount(occupancy[y]);
+        }
+
+        return filled;
+    }
+
+    /**
+     * Get the number of columns on the board
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows on the board
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+}
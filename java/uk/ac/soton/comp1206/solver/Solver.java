@@ -0,0 +1,241 @@
+package uk.ac.soton.comp1206.solver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * The Solver finds the best move for the current piece of a game. It tries every distinct rotation of the piece at
+ * every place on the grid, optionally swapping with the following piece first or looking ahead to where the following
+ * piece could go afterwards, and scores each result with a Heuristic.
+ * <p>
+ * Moves are tried on preallocated SearchBoards using the same scoring rules as the GameEngine, so no memory is
+ * allocated for each move tried. A Solver keeps its boards between searches, so it is not thread safe and each thread
+ * should have its own.
+ */
+public class Solver {
+
+    /**
+     * The logger for this class
+     */
+    private static final Logger logger = LogManager.getLogger(Solver.class);
+
+    /**
+     * The value taken off a move when the following piece cannot be played anywhere afterwards, as it costs a life
+     */
+    public static final double NO_MOVE_PENALTY = 1000;
+
+    /**
+     * The heuristic used to score the boards
+     */
+    private final Heuristic heuristic;
+
+    /**
+     * The board being searched from
+     */
+    private SearchBoard rootBoard;
+
+    /**
+     * The board after the first piece is played
+     */
+    private SearchBoard firstBoard;
+
+    /**
+     * The board after the following piece is played
+     */
+    private SearchBoard secondBoard;
+
+    /**
+     * The legal centres of the piece being tried on the root board
+     */
+    private long[] rootPlacements;
+
+    /**
+     * The legal centres of the following piece on the board after the first move
+     */
+    private long[] firstPlacements;
+
+    /**
+     * The value of the best move found so far
+     */
+    private double bestValue;
+
+    /**
+     * Whether the best move found so far swaps pieces
+     */
+    private boolean bestSwap;
+
+    /**
+     * The rotation of the best move found so far
+     */
+    private int bestRotation;
+
+    /**
+     * The column of the centre of the best move found so far, or -1 if none has been found
+     */
+    private int bestX;
+
+    /**
+     * The row of the centre of the best move found so far
+     */
+    private int bestY;
+
+    /**
+     * Create a new solver using the default heuristic
+     */
+    public Solver() {
+        this(WeightedHeuristic.DEFAULT);
+    }
+
+    /**
+     * Create a new solver using the given heuristic
+     * @param heuristic the heuristic used to score the boards
+     */
+    public Solver(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Find the best move for the current piece, allowing a swap but without looking ahead
+     * @param engine the game to find a move for
+     * @return the best move, or null if the piece cannot be played anywhere
+     */
+    public Move findBestMove(GameEngine engine) {
+        return findBestMove(engine, false, true);
+    }
+
+    /**
+     * Find the best move for the current piece
+     * @param engine the game to find a move for
+     * @param lookahead whether to also place the following piece and score the board after both moves
+     * @param allowSwap whether to also try swapping the current and following pieces first
+     * @return the best move, or null if the piece cannot be played anywhere
+     */
+    public Move findBestMove(GameEngine engine, boolean lookahead, boolean allowSwap) {
+        prepareBoards(engine.getGrid());
+
+        GamePiece current = engine.getCurrentPiece();
+        GamePiece following = engine.getFollowingPiece();
+        if (current == null) return null;
+
+        bestValue = Double.NEGATIVE_INFINITY;
+        bestX = -1;
+
+        GamePiece.GamePieceType followingType = following != null ? following.getType() : null;
+        search(current.getType(), followingType, false, engine.getMultiplier(), lookahead);
+
+        // Swapping to the same type of piece cannot change anything
+        if (allowSwap && followingType != null && followingType != current.getType()) {
+            search(followingType, current.getType(), true, engine.getMultiplier(), lookahead);
+        }
+
+        if (bestX < 0) return null;
+
+        Move move = new Move(bestSwap, bestRotation, bestX, bestY, bestValue);
+        logger.trace("Best move for {}: {}", current, move);
+        return move;
+    }
+
+    /**
+     * Try every placement of a piece on the root board, keeping the best
+     * @param type the piece to place
+     * @param nextType the piece played after it, used when looking ahead
+     * @param swap whether the pieces were swapped to play this piece
+     * @param multiplier the multiplier before the move
+     * @param lookahead whether to also place the next piece
+     */
+    private void search(GamePiece.GamePieceType type, GamePiece.GamePieceType nextType, boolean swap, int multiplier,
+                        boolean lookahead) {
+        int rows = rootBoard.getRows();
+
+        for (int rotation = 0; rotation < type.getDistinctOrientations(); rotation++) {
+            int shape = type.getOrientation(rotation);
+            rootBoard.legalPlacements(shape, rootPlacements);
+
+            for (int y = 0; y < rows; y++) {
+                for (long centres = rootPlacements[y]; centres != 0; centres &= centres - 1) {
+                    int x = Long.numberOfTrailingZeros(centres);
+
+                    // Moves are made at the centre of the piece, while the board takes its top left
+                    firstBoard.copyFrom(rootBoard);
+                    int lines = firstBoard.play(shape, x - 1, y - 1);
+                    int scoreGained = GameEngine.getScoreFor(lines, firstBoard.getClearedBlocks(), multiplier);
+                    int newMultiplier = GameEngine.getNextMultiplier(multiplier, lines > 0);
+
+                    double value;
+                    if (lookahead && nextType != null) {
+                        value = searchFollowUp(nextType, lines, scoreGained, newMultiplier);
+                    } else {
+                        value = heuristic.evaluate(firstBoard, lines, scoreGained, newMultiplier);
+                    }
+
+                    if (value > bestValue) {
+                        bestValue = value;
+                        bestSwap = swap;
+                        bestRotation = rotation;
+                        bestX = x;
+                        bestY = y;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the value of the best placement of the next piece on the board left by the first
+     * @param type the next piece
+     * @param linesSoFar the lines cleared by the first piece
+     * @param scoreSoFar the score gained by the first piece
+     * @param multiplier the multiplier after the first piece
+     * @return the value of the best placement, scored over both moves
+     */
+    private double searchFollowUp(GamePiece.GamePieceType type, int linesSoFar, int scoreSoFar, int multiplier) {
+        int rows = firstBoard.getRows();
+        double best = Double.NEGATIVE_INFINITY;
+
+        for (int rotation = 0; rotation < type.getDistinctOrientations(); rotation++) {
+            int shape = type.getOrientation(rotation);
+            firstBoard.legalPlacements(shape, firstPlacements);
+
+            for (int y = 0; y < rows; y++) {
+                for (long centres = firstPlacements[y]; centres != 0; centres &= centres - 1) {
+                    int x = Long.numberOfTrailingZeros(centres);
+
+                    secondBoard.copyFrom(firstBoard);
+                    int lines = secondBoard.play(shape, x - 1, y - 1);
+                    int scoreGained = GameEngine.getScoreFor(lines, secondBoard.getClearedBlocks(), multiplier);
+                    int newMultiplier = GameEngine.getNextMultiplier(multiplier, lines > 0);
+
+                    double value = heuristic.evaluate(secondBoard, linesSoFar + lines, scoreSoFar + scoreGained,
+                            newMultiplier);
+                    if (value > best) best = value;
+                }
+            }
+        }
+
+        // The next piece could not go anywhere, so it would cost a life
+        if (best == Double.NEGATIVE_INFINITY) {
+            best = heuristic.evaluate(firstBoard, linesSoFar, scoreSoFar, 1) - NO_MOVE_PENALTY;
+        }
+
+        return best;
+    }
+
+    /**
+     * Make sure the search boards match the size of the grid, and copy the grid onto the root board
+     * @param grid the grid to search from
+     */
+    private void prepareBoards(Grid grid) {
+        if (rootBoard == null || rootBoard.getCols() != grid.getCols() || rootBoard.getRows() != grid.getRows()) {
+            rootBoard = new SearchBoard(grid.getCols(), grid.getRows());
+            firstBoard = new SearchBoard(grid.getCols(), grid.getRows());
+            secondBoard = new SearchBoard(grid.getCols(), grid.getRows());
+            rootPlacements = new long[grid.getRows()];
+            firstPlacements = new long[grid.getRows()];
+        }
+
+        rootBoard.copyFrom(grid);
+    }
+}
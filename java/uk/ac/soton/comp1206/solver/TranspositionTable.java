@@ -0,0 +1,222 @@
+package uk.ac.soton.comp1206.solver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size table of search results keyed on a Zobrist hash, so positions reached through a different order of
+ * moves are only searched once. It can be shared between any number of threads without locking.
+ * <p>
+ * Entries are held in buckets of two. The first slot of a bucket keeps the deepest result, unless it is from an older
+ * search, and the second slot always takes whatever the first slot would not. Each entry is written as three longs,
+ * with the key stored XORed with the other two, so an entry torn by two threads writing at once no longer matches its
+ * key and is read as a miss.
+ */
+public class TranspositionTable {
+
+    /**
+     * The number of longs in each entry: the checked key, the value and the depth and generation
+     */
+    private static final int ENTRY_LONGS = 3;
+
+    /**
+     * The bit set in the info of every entry that has been written
+     */
+    private static final long VALID = 1L << 32;
+
+    /**
+     * The entries, two to a bucket
+     */
+    private final AtomicLongArray entries;
+
+    /**
+     * The mask used to pick a bucket from a key
+     */
+    private final int bucketMask;
+
+    /**
+     * The current search, used to replace entries left over from older searches
+     */
+    private volatile int generation;
+
+    /**
+     * The number of lookups that found an entry
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * The number of lookups that did not find an entry
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The number of entries stored
+     */
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * The number of stores that overwrote a different position
+     */
+    private final LongAdder replacements = new LongAdder();
+
+    /**
+     * Create a new table
+     * @param sizeBits the table holds 2 to the power of this many entries
+     */
+    public TranspositionTable(int sizeBits) {
+        if (sizeBits < 1 || sizeBits > 26) throw new IllegalArgumentException("Invalid table size: " + sizeBits);
+
+        int capacity = 1 << sizeBits;
+        this.entries = new AtomicLongArray(capacity * ENTRY_LONGS);
+        this.bucketMask = (capacity >>> 1) - 1;
+    }
+
+    /**
+     * Look up the value stored for a position
+     * @param key the hash of the position
+     * @return the value, or NaN if there is none
+     */
+    public double probe(long key) {
+        int base = bucketOf(key);
+
+        for (int slot = 0; slot < 2; slot++) {
+            int index = base + slot * ENTRY_LONGS;
+            long check = entries.getAcquire(index);
+            long value = entries.getAcquire(index + 1);
+            long info = entries.getAcquire(index + 2);
+
+            if ((info & VALID) != 0 && (check ^ value ^ info) == key) {
+                hits.increment();
+                return Double.longBitsToDouble(value);
+            }
+        }
+
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * Store the value found for a position
+     * @param key the hash of the position
+     * @param depth the depth the position was searched to, where deeper results are kept for longer
+     * @param value the value found
+     */
+    public void store(long key, int depth, double value) {
+        int base = bucketOf(key);
+        int currentGeneration = generation & 0xFFFF;
+
+        // Use the depth preferred slot if it is empty, holds this position, is from an older search or is shallower
+        long check = entries.getAcquire(base);
+        long storedValue = entries.getAcquire(base + 1);
+        long storedInfo = entries.getAcquire(base + 2);
+        boolean samePosition = (check ^ storedValue ^ storedInfo) == key;
+        boolean replaceFirst = (storedInfo & VALID) == 0
+                || samePosition
+                || ((storedInfo >>> 16) & 0xFFFF) != currentGeneration
+                || depth >= (storedInfo & 0xFFFF);
+
+        int index = replaceFirst ? base : base + ENTRY_LONGS;
+        if (!replaceFirst || !samePosition) {
+            if ((entries.getAcquire(index + 2) & VALID) != 0) replacements.increment();
+        }
+
+        long bits = Double.doubleToRawLongBits(value);
+        long info = VALID | ((long) currentGeneration << 16) | (depth & 0xFFFF);
+        entries.setRelease(index + 1, bits);
+        entries.setRelease(index + 2, info);
+        entries.setRelease(index, key ^ bits ^ info);
+        stores.increment();
+    }
+
+    /**
+     * Start a new search, so entries from older searches are replaced first
+     */
+    public void newSearch() {
+        generation++;
+    }
+
+    /**
+     * Empty the table and reset the counters
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.setRelease(i, 0);
+        }
+
+        hits.reset();
+        misses.reset();
+        stores.reset();
+        replacements.reset();
+    }
+
+    /**
+     * Get the index of the first entry in the bucket for a key
+     * @param key the hash of the position
+     * @return the index of the first long of the bucket
+     */
+    private int bucketOf(long key) {
+        int bucket = (int) (key ^ (key >>> 32)) & bucketMask;
+        return bucket * 2 * ENTRY_LONGS;
+    }
+
+    /**
+     * Get the number of entries the table can hold
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return entries.length() / ENTRY_LONGS;
+    }
+
+    /**
+     * Get the number of lookups that found an entry
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that did not find an entry
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of entries stored
+     * @return the number of stores
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Get the number of stores that overwrote a different position
+     * @return the number of replacements
+     */
+    public long getReplacements() {
+        return replacements.sum();
+    }
+
+    /**
+     * Get the fraction of lookups that found an entry
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Transforms the counters into a string for debugging
+     * @return the table string
+     */
+    @Override
+    public String toString() {
+        return String.format("TranspositionTable(%d entries, %d hits, %d misses, %.1f%% hit rate, %d stores, "
+                + "%d replacements)", getCapacity(), getHits(), getMisses(), getHitRate() * 100, getStores(),
+                getReplacements());
+    }
+}
@@ -0,0 +1,72 @@
+package uk.ac.soton.comp1206.solver;
+
+/**
+ * A Heuristic that adds up a weighted set of features of the board. Each weight can be tuned, for example from the
+ * results of the BatchRunner.
+ */
+public class WeightedHeuristic implements Heuristic {
+
+    /**
+     * The weights used when none are given, which favour clearing lines and keeping the board open
+     */
+    public static final WeightedHeuristic DEFAULT = new WeightedHeuristic(1, 20, -15, 10, -2);
+
+    /**
+     * The weight of the score gained
+     */
+    private final double scoreWeight;
+
+    /**
+     * The weight of each line cleared
+     */
+    private final double linesWeight;
+
+    /**
+     * The weight of each hole left on the board
+     */
+    private final double holesWeight;
+
+    /**
+     * The weight of the multiplier after the move
+     */
+    private final double multiplierWeight;
+
+    /**
+     * The weight of each filled block left on the board
+     */
+    private final double filledWeight;
+
+    /**
+     * Create a new weighted heuristic
+     * @param scoreWeight the weight of the score gained
+     * @param linesWeight the weight of each line cleared
+     * @param holesWeight the weight of each hole left on the board
+     * @param multiplierWeight the weight of the multiplier after the move
+     * @param filledWeight the weight of each filled block left on the board
+     */
+    public WeightedHeuristic(double scoreWeight, double linesWeight, double holesWeight, double multiplierWeight,
+                             double filledWeight) {
+        this.scoreWeight = scoreWeight;
+        this.linesWeight = linesWeight;
+        this.holesWeight = holesWeight;
+        this.multiplierWeight = multiplierWeight;
+        this.filledWeight = filledWeight;
+    }
+
+    /**
+     * Score the board left after a move
+     * @param board the board after the move, with any lines cleared
+     * @param linesCleared the number of lines the move cleared
+     * @param scoreGained the score the move added
+     * @param multiplier the multiplier after the move
+     * @return the value of the move
+     */
+    @Override
+    public double evaluate(SearchBoard board, int linesCleared, int scoreGained, int multiplier) {
+        return scoreWeight * scoreGained
+                + linesWeight * linesCleared
+                + holesWeight * board.countHoles()
+                + multiplierWeight * multiplier
+                + filledWeight * board.countFilled();
+    }
+}
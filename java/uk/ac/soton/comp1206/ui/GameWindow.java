@@ -9,6 +9,7 @@ import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
+import uk.ac.soton.comp1206.game.Grid;
 import uk.ac.soton.comp1206.game.Multimedia;
 import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.scene.*;
@@ -33,6 +34,16 @@ public class GameWindow {
      */
     private static final boolean communicatorEnabled = true;
 
+    /**
+     * The number of columns on the game board when none is given
+     */
+    public static final int DEFAULT_BOARD_COLS = 5;
+
+    /**
+     * The number of rows on the game board when none is given
+     */
+    public static final int DEFAULT_BOARD_ROWS = 5;
+
     /**
      * The width of the window in pixels
      */
@@ -43,6 +54,16 @@ public class GameWindow {
      */
     private final int height;
 
+    /**
+     * The number of columns on the game board
+     */
+    private final int boardCols;
+
+    /**
+     * The number of rows on the game board
+     */
+    private final int boardRows;
+
     /**
      * The Stage object
      */
@@ -70,8 +91,26 @@ public class GameWindow {
      * @param height height
      */
     public GameWindow(Stage stage, int width, int height) {
+        this(stage, width, height, DEFAULT_BOARD_COLS, DEFAULT_BOARD_ROWS);
+    }
+
+    /**
+     * Create a new GameWindow attached to the given stage with the specified width and height, playing games on a
+     * board of the given size
+     * @param stage stage
+     * @param width width
+     * @param height height
+     * @param boardCols number of columns on the game board, at most {@link Grid#MAX_COLS}
+     * @param boardRows number of rows on the game board, at most {@link Grid#MAX_ROWS}
+     */
+    public GameWindow(Stage stage, int width, int height, int boardCols, int boardRows) {
+        if (boardCols < 1 || boardCols > Grid.MAX_COLS || boardRows < 1 || boardRows > Grid.MAX_ROWS)
+            throw new IllegalArgumentException("Invalid board size: " + boardCols + "x" + boardRows);
+
         this.width = width;
         this.height = height;
+        this.boardCols = boardCols;
+        this.boardRows = boardRows;
 
         this.stage = stage;
 
@@ -113,13 +152,20 @@ public class GameWindow {
     /**
      * Display the single player challenge
      */
-    public void startChallenge() { loadScene(new ChallengeScene(this)); }
+    public void startChallenge() { loadScene(new ChallengeScene(this, boardCols, boardRows)); }
+
+    /**
+     * Display a single player challenge where moves can be undone
+     */
+    public void startPractice() {
+        loadScene(new PracticeScene(this, boardCols, boardRows));
+    }
 
     /**
      * Display the multiplayer challenge
      */
     public void startMultiplayerChallenge () {
-        loadScene(new MultiplayerScene(this));
+        loadScene(new MultiplayerScene(this, boardCols, boardRows));
     }
 
     /**